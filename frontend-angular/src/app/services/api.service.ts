@@ -27,6 +27,9 @@ export interface MetricSummaryDTO {
   ramAvg?: number; ramMax?: number;
   diskAvg?: number; diskMax?: number;
   points: number;
+  cpuP50?: number; cpuP95?: number; cpuP99?: number;
+  ramP50?: number; ramP95?: number; ramP99?: number;
+  diskP50?: number; diskP95?: number; diskP99?: number;
 }
 
 export interface LiveStatus {
@@ -69,8 +72,8 @@ export class ApiService {
   latestMetrics(hostname: string, limit: number){
     return this.http.get<MetricPointDTO[]>(`${this.base()}/api/assets/${encodeURIComponent(hostname)}/metrics?limit=${limit}`);
   }
-  rangeMetrics(hostname: string, fromIso: string, toIso: string){
-    return this.http.get<MetricPointDTO[]>(`${this.base()}/api/assets/${encodeURIComponent(hostname)}/metrics?from=${encodeURIComponent(fromIso)}&to=${encodeURIComponent(toIso)}`);
+  rangeMetrics(hostname: string, fromIso: string, toIso: string, maxPoints = 500){
+    return this.http.get<MetricPointDTO[]>(`${this.base()}/api/assets/${encodeURIComponent(hostname)}/metrics?from=${encodeURIComponent(fromIso)}&to=${encodeURIComponent(toIso)}&maxPoints=${maxPoints}`);
   }
   summary(hostname: string, fromIso: string, toIso: string){
     return this.http.get<MetricSummaryDTO>(`${this.base()}/api/assets/${encodeURIComponent(hostname)}/metrics/summary?from=${encodeURIComponent(fromIso)}&to=${encodeURIComponent(toIso)}`);
@@ -34,7 +34,7 @@ export const api = {
   listAssets: (q = '') => jsonFetch(`/api/assets${q ? `?q=${encodeURIComponent(q)}` : ''}`),
   getAsset: (hostname) => jsonFetch(`/api/assets/${encodeURIComponent(hostname)}`),
   latestMetrics: (hostname, limit = 50) => jsonFetch(`/api/assets/${encodeURIComponent(hostname)}/metrics?limit=${limit}`),
-  rangeMetrics: (hostname, fromIso, toIso) => jsonFetch(`/api/assets/${encodeURIComponent(hostname)}/metrics?from=${encodeURIComponent(fromIso)}&to=${encodeURIComponent(toIso)}`),
+  rangeMetrics: (hostname, fromIso, toIso, maxPoints = 500) => jsonFetch(`/api/assets/${encodeURIComponent(hostname)}/metrics?from=${encodeURIComponent(fromIso)}&to=${encodeURIComponent(toIso)}&maxPoints=${maxPoints}`),
   summary: (hostname, fromIso, toIso) => jsonFetch(`/api/assets/${encodeURIComponent(hostname)}/metrics/summary?from=${encodeURIComponent(fromIso)}&to=${encodeURIComponent(toIso)}`),
   patchAsset: (hostname, body) => jsonFetch(`/api/assets/${encodeURIComponent(hostname)}`, { method: 'PATCH', body: JSON.stringify(body) }),
 
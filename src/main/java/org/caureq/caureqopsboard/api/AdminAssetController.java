@@ -5,6 +5,8 @@ import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Positive;
 import lombok.RequiredArgsConstructor;
 import org.caureq.caureqopsboard.repo.AssetRepo;
+import org.caureq.caureqopsboard.service.AssetIdCache;
+import org.caureq.caureqopsboard.service.FleetSnapshot;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -13,6 +15,8 @@ import org.springframework.web.bind.annotation.*;
 @RequiredArgsConstructor
 public class AdminAssetController {
     private final org.caureq.caureqopsboard.repo.AssetRepo assetRepo;
+    private final AssetIdCache assetIds;
+    private final FleetSnapshot fleet;
 
     public record MappingUpdate(@NotBlank String node, @Positive Integer vmid) {}
 
@@ -24,6 +28,8 @@ public class AdminAssetController {
         a.setNode(body.node());
         a.setVmid(body.vmid());
         assetRepo.save(a);
+        assetIds.invalidate(a.getHostname());
+        fleet.reload(a.getId());
         return ResponseEntity.noContent().build();
     }
 }
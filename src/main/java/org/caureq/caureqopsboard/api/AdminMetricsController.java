@@ -0,0 +1,27 @@
+package org.caureq.caureqopsboard.api;
+
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import org.caureq.caureqopsboard.service.MetricImportService;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+
+/**
+ * Admin metrics maintenance — bulk import of historical samples.
+ */
+@RestController
+@RequestMapping("/api/admin/metrics")
+@RequiredArgsConstructor
+public class AdminMetricsController {
+    private final MetricImportService importService;
+
+    /**
+     * Import NDJSON (one {"hostname","ts","cpu","ram","disk","services"} object per line).
+     * The body is streamed and copied in chunks; unknown hostnames are skipped.
+     */
+    @PostMapping(value = "/import", consumes = {"application/x-ndjson", "text/plain"})
+    public MetricImportService.ImportResult importNdjson(HttpServletRequest req) throws IOException {
+        return importService.importNdjson(req.getInputStream());
+    }
+}
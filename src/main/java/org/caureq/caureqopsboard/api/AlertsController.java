@@ -14,16 +14,27 @@ import org.springframework.web.bind.annotation.*;
 public class AlertsController {
     private final AlertRegistry registry;
 
+    /**
+     * Newest alerts first. Without an offset, pages are keyset-based: the next page's cursor is
+     * returned in X-Next-Cursor (absent on the last page) and passed back as cursor=.
+     * offset (legacy) pages by page number instead.
+     */
     @GetMapping
-    public java.util.List<AlertRegistry.Alert> list(
+    public ResponseEntity<java.util.List<AlertRegistry.Alert>> list(
             @RequestParam(value = "host", required = false) String host,
             @RequestParam(value = "ack", required = false) Boolean ack,
             @RequestParam(value = "limit", required = false) Integer limit,
-            @RequestParam(value = "offset", required = false) Integer offset
+            @RequestParam(value = "offset", required = false) Integer offset,
+            @RequestParam(value = "cursor", required = false) String cursor
     ) {
         int lim = (limit == null ? 50 : limit);
-        int off = (offset == null ? 0 : offset);
-        return registry.query(host, ack, lim, off);
+        if (cursor == null && offset != null && offset > 0) {
+            return ResponseEntity.ok(registry.query(host, ack, lim, offset));
+        }
+        var page = registry.scroll(host, ack, lim, cursor);
+        var ok = ResponseEntity.ok();
+        if (page.nextCursor() != null) ok.header("X-Next-Cursor", page.nextCursor());
+        return ok.body(page.items());
     }
 
     @PostMapping("/{id}/ack")
@@ -5,6 +5,7 @@ import lombok.RequiredArgsConstructor;
 import org.caureq.caureqopsboard.api.dto.AssetDetailDTO;
 import org.caureq.caureqopsboard.api.dto.AssetListItemDTO;
 import org.caureq.caureqopsboard.service.AssetQueryService;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
@@ -27,23 +28,56 @@ public class AssetController {
     private final AssetQueryService service;
 
     /**
-     * List assets with optional search and pagination.
+     * List assets with optional search, filters, sorting and pagination.
      * This returns DB information only; the UI overlays live state from /api/status/live.
+     * The number of matching assets (all pages) is returned in X-Total-Count, and the cursor of
+     * the next page (absent on the last one) in X-Next-Cursor.
      *
      * @param q optional hostname filter (contains, case-insensitive)
      * @param limit page size (default 200, max 1000)
      * @param offset start offset (0-based)
      * @param includeRetired whether to include assets tagged as "retired"
+     * @param tag tags to match (repeatable or comma-separated)
+     * @param tagMatch any (default) or all of the given tags
+     * @param excludeTag tags that exclude an asset (repeatable or comma-separated)
+     * @param status UP, STALE and/or DOWN (repeatable or comma-separated)
+     * @param sort hostname (default), cpu, ram, disk or lastSeen
+     * @param order asc or desc (default: desc for metrics and lastSeen, asc for hostname)
+     * @param cursor X-Next-Cursor of the previous page (keyset; replaces offset)
      * @return list of AssetListItemDTO for the requested slice
      */
     @GetMapping("/assets")
-    public List<AssetListItemDTO> list(
+    public ResponseEntity<List<AssetListItemDTO>> list(
             @RequestParam(value="q", required=false) String q,
             @RequestParam(value="limit", required=false) Integer limit,
             @RequestParam(value="offset", required=false) Integer offset,
-            @RequestParam(value="includeRetired", required=false, defaultValue = "false") boolean includeRetired){
-        return service.list(q, limit, offset, includeRetired);
+            @RequestParam(value="includeRetired", required=false, defaultValue = "false") boolean includeRetired,
+            @RequestParam(value="tag", required=false) List<String> tag,
+            @RequestParam(value="tagMatch", required=false) String tagMatch,
+            @RequestParam(value="excludeTag", required=false) List<String> excludeTag,
+            @RequestParam(value="status", required=false) List<String> status,
+            @RequestParam(value="sort", required=false) String sort,
+            @RequestParam(value="order", required=false) String order,
+            @RequestParam(value="cursor", required=false) String cursor){
+        var res = service.list(new AssetQueryService.ListQuery(q, limit, offset, includeRetired,
+                tag, AssetQueryService.TagMatch.parse(tagMatch), excludeTag, status, sort, order, cursor));
+        var ok = ResponseEntity.ok().header("X-Total-Count", Long.toString(res.total()));
+        if (res.nextCursor() != null) ok.header("X-Next-Cursor", res.nextCursor());
+        return ok.body(res.items());
     }
+
+    /**
+     * Hostname typeahead: only matching hostnames, prefix matches first.
+     * @param q search text (contains, case-insensitive)
+     * @param limit max results (default 10, max 50)
+     */
+    @GetMapping("/assets/suggest")
+    public List<String> suggest(
+            @RequestParam(value="q", required=false) String q,
+            @RequestParam(value="limit", required=false) Integer limit){
+        return service.suggest(q, limit);
+    }
+
     /**
      * Get the DB details for an asset (owner, tags, lastSeen...)
      * Live VM state is available separately under /api/status/live/{hostname}.
@@ -0,0 +1,33 @@
+package org.caureq.caureqopsboard.api;
+
+import lombok.RequiredArgsConstructor;
+import org.caureq.caureqopsboard.api.dto.FleetSnapshotDTO;
+import org.caureq.caureqopsboard.service.FleetSnapshot;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+
+/**
+ * Whole-fleet view for dashboards and wallboards, served from the in-memory FleetSnapshot.
+ * Clients poll with If-None-Match: an unchanged snapshot answers 304 without a body.
+ */
+@RestController
+@RequestMapping("/api/dashboard")
+@RequiredArgsConstructor
+public class DashboardController {
+    private final FleetSnapshot fleet;
+
+    @GetMapping
+    public ResponseEntity<FleetSnapshotDTO> snapshot(WebRequest request) {
+        var s = fleet.current();
+        var etag = fleet.etag(s);
+        if (request.checkNotModified(etag)) return null; // 304 already written
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .body(s.toDto());
+    }
+}
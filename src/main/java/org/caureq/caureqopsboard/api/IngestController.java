@@ -1,20 +1,69 @@
 package org.caureq.caureqopsboard.api;
 
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.caureq.caureqopsboard.api.dto.IngestDTO;
+import org.caureq.caureqopsboard.service.IngestQueue;
 import org.caureq.caureqopsboard.service.IngestService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.util.Map;
+
 @RestController
 @RequestMapping("/api/ingest")
 @RequiredArgsConstructor
 public class IngestController {
     private final IngestService ingestService;
+    private final IngestQueue ingestQueue;
+
+    @Value("${app.ingest.batch-max:5000}")
+    private int batchMax;
+    /** When true, samples are queued and written by background workers (202/429). */
+    @Value("${app.ingest.async:false}")
+    private boolean async;
+    @Value("${app.ingest.queue.retry-after-seconds:5}")
+    private int retryAfterSeconds;
+
     @PostMapping
-    @ResponseStatus(HttpStatus.NO_CONTENT)
-    public void ingest(@Valid @RequestBody IngestDTO body) {
-        ingestService.ingest(body);
+    public ResponseEntity<Void> ingest(@Valid @RequestBody IngestDTO body) {
+        if (!async) {
+            ingestService.ingest(body);
+            return ResponseEntity.noContent().build();
+        }
+        if (!ingestQueue.offer(body)) {
+            // queue full: ask the agent to back off
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+                    .build();
+        }
+        return ResponseEntity.accepted().build();
+    }
+
+    /**
+     * Ingest an array of samples (collector pass) in one transaction.
+     * The body (optionally gzip/deflate encoded) is parsed as a stream, element by element.
+     * Invalid samples are skipped and counted instead of failing the whole batch.
+     */
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public Map<String, Integer> ingestBatch(HttpServletRequest req) throws IOException {
+        var r = ingestService.ingestStream(req.getInputStream(), batchMax);
+        return Map.of("ingested", r.accepted(), "rejected", r.rejected());
+    }
+
+    /**
+     * Upload samples an agent buffered while offline (each with its own ts).
+     * Written through the bulk path at their original time, without live alerting.
+     */
+    @PostMapping(value = "/replay", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public Map<String, Integer> replay(HttpServletRequest req) throws IOException {
+        var r = ingestService.replayStream(req.getInputStream(), batchMax);
+        return Map.of("replayed", r.accepted(), "rejected", r.rejected());
     }
 }
@@ -3,44 +3,107 @@ package org.caureq.caureqopsboard.api;
 import lombok.RequiredArgsConstructor;
 import org.caureq.caureqopsboard.api.dto.MetricPointDTO;
 import org.caureq.caureqopsboard.api.dto.MetricSummaryDTO;
+import org.caureq.caureqopsboard.service.AssetIdCache;
 import org.caureq.caureqopsboard.service.MetricQueryService;
+import org.caureq.caureqopsboard.service.MetricWindowCache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.convert.DurationStyle;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import java.time.Duration;
 import java.time.Instant;
 import java.time.OffsetDateTime;
 import java.util.List;
+import java.util.function.Supplier;
 
 /**
  * Metrics read APIs for an asset: latest window, ranges and summaries.
+ * Ranges and summaries of closed windows carry a strong ETag (304 on If-None-Match without
+ * a DB query) and are served from MetricWindowCache.
  */
 @RestController
 @RequestMapping("/api/assets/{hostname}/metrics")
 @RequiredArgsConstructor
 public class MetricController {
     private final MetricQueryService metricQueryService;
+    private final MetricWindowCache windows;
+    private final AssetIdCache assetIds;
 
+    /** Browser/proxy revalidation interval for closed windows. */
+    @Value("${app.metrics.window-max-age-seconds:300}")
+    private long windowMaxAgeSeconds;
+
+    /**
+     * Latest points, or the range [from, to] when both are given.
+     * Latest points are newest first; X-Next-Cursor (passed back as cursor=) scrolls further back.
+     * @param maxPoints optional cap on returned points (LTTB downsampling, spikes preserved;
+     *                  at most 10 x app.metrics.point-budget, rollup buckets reported by their max)
+     */
     @GetMapping
-    public List<MetricPointDTO> query(
+    public ResponseEntity<List<MetricPointDTO>> query(
             @PathVariable String hostname,
             @RequestParam(required = false) Integer limit,
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
-            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+            @RequestParam(required = false) Integer maxPoints,
+            @RequestParam(required = false) String cursor,
+            WebRequest request
     ) {
         if (from != null && to != null) {
-            return metricQueryService.between(hostname, from, to);
+            Integer target = maxPoints == null ? null : metricQueryService.clampMaxPoints(maxPoints);
+            String variant = "range:" + (target == null ? "" : target);
+            var dataEnd = metricQueryService.dataEnd(from, to, target);
+            return window(hostname, from, to, dataEnd, variant, request, () -> target != null
+                    ? metricQueryService.between(hostname, from, to, target)
+                    : metricQueryService.between(hostname, from, to));
         }
         var lim = (limit == null ? 20 : limit);
-        return metricQueryService.latest(hostname, lim);
+        var page = metricQueryService.latestPage(hostname, lim, cursor);
+        var ok = ResponseEntity.ok();
+        if (page.nextCursor() != null) ok.header("X-Next-Cursor", page.nextCursor());
+        return ok.body(page.items());
     }
 
+    /**
+     * Avg/max and p50/p95/p99 for [from, to], computed in the database.
+     * @param step optional bucket width (e.g. 1h, 15m, PT6H) for per-bucket aggregates
+     */
     @GetMapping("/summary")
-    public MetricSummaryDTO summary(
+    public ResponseEntity<MetricSummaryDTO> summary(
             @PathVariable String hostname,
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
-            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+            @RequestParam(required = false) String step,
+            WebRequest request
     ) {
-        return metricQueryService.summary(hostname, from, to);
+        Duration d = null;
+        if (step != null && !step.isBlank()) {
+            try { d = DurationStyle.detectAndParse(step.trim()); }
+            catch (IllegalArgumentException e) { throw new IllegalArgumentException("invalid step: " + step); }
+        }
+        var stepD = d;
+        return window(hostname, from, to, to, "summary:" + (d == null ? "" : d.toSeconds()), request,
+                () -> metricQueryService.summary(hostname, from, to, stepD));
+    }
+
+    /**
+     * Closed windows: ETag + 304 + cached result; open windows are computed and not cached.
+     * @param dataEnd last instant whose samples reach the result (summaries read raw rows up to `to`)
+     */
+    private <T> ResponseEntity<T> window(String hostname, Instant from, Instant to, Instant dataEnd, String variant,
+                                         WebRequest request, Supplier<T> query) {
+        var key = windows.key(assetIds.requireId(hostname), from, to, dataEnd, variant);
+        if (key == null) return ResponseEntity.ok(query.get());
+        var etag = MetricWindowCache.etag(key);
+        if (request.checkNotModified(etag)) return null; // 304 already written
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(CacheControl.maxAge(Duration.ofSeconds(windowMaxAgeSeconds)).cachePrivate())
+                .body(windows.get(key, query));
     }
 
     @GetMapping("/fs")
@@ -0,0 +1,47 @@
+package org.caureq.caureqopsboard.api;
+
+import lombok.RequiredArgsConstructor;
+import org.caureq.caureqopsboard.service.MetricExportService;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Bulk export of raw metric history (capacity reports), streamed as CSV or NDJSON.
+ */
+@RestController
+@RequestMapping("/api/metrics")
+@RequiredArgsConstructor
+public class MetricExportController {
+    private final MetricExportService exportService;
+
+    /**
+     * Stream all raw samples of the given hosts in [from, to], ordered by host then time.
+     *
+     * @param hosts one or more hostnames (repeat the parameter or separate with commas)
+     * @param format csv (default) or ndjson (re-importable via /api/admin/metrics/import)
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> export(
+            @RequestParam List<String> hosts,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+            @RequestParam(required = false) String format
+    ) {
+        if (from.isAfter(to)) throw new IllegalArgumentException("from must be before to");
+        var fmt = MetricExportService.Format.parse(format);
+        var resolved = exportService.resolveHosts(hosts);
+        StreamingResponseBody body = out -> exportService.export(resolved, from, to, fmt, out);
+        var filename = "metrics." + fmt.name().toLowerCase(java.util.Locale.ROOT);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(fmt.contentType))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
+                .body(body);
+    }
+}
@@ -0,0 +1,55 @@
+package org.caureq.caureqopsboard.api;
+
+import lombok.RequiredArgsConstructor;
+import org.caureq.caureqopsboard.api.dto.ServiceTransitionDTO;
+import org.caureq.caureqopsboard.service.AssetIdCache;
+import org.caureq.caureqopsboard.service.MetricQueryService;
+import org.caureq.caureqopsboard.service.ServiceStateService;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Service state read APIs for an asset: current states and transition history.
+ */
+@RestController
+@RequestMapping("/api/assets/{hostname}/services")
+@RequiredArgsConstructor
+public class ServiceStateController {
+    private final MetricQueryService metricQueryService;
+    private final ServiceStateService serviceStates;
+    private final AssetIdCache assetIds;
+
+    /** Current service -> state map (served from memory). */
+    @GetMapping
+    public Map<String, String> current(@PathVariable String hostname) {
+        return metricQueryService.latestServices(hostname);
+    }
+
+    /**
+     * State changes in [from, to], oldest first (default: last 24h, at most 1000 rows).
+     * @param service optional exact service name filter
+     */
+    @GetMapping("/history")
+    public List<ServiceTransitionDTO> history(
+            @PathVariable String hostname,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+            @RequestParam(required = false) String service,
+            @RequestParam(required = false) Integer limit
+    ) {
+        var end = (to == null ? Instant.now() : to);
+        var start = (from == null ? end.minus(Duration.ofHours(24)) : from);
+        if (start.isAfter(end)) throw new IllegalArgumentException("from must be before to");
+        int lim = Math.max(1, Math.min(limit == null ? 1000 : limit, 10000));
+        long id = assetIds.requireId(hostname);
+        return serviceStates.history(id, start, end, service, lim).stream()
+                .map(r -> new ServiceTransitionDTO(r.service(), r.state(), r.ts().atOffset(ZoneOffset.UTC)))
+                .toList();
+    }
+}
@@ -0,0 +1,12 @@
+package org.caureq.caureqopsboard.api.dto;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+
+/** One asset of the dashboard snapshot: DB fields, newest sample and live VM state together. */
+public record FleetAssetDTO(
+        String hostname, String ip, String os, String owner, List<String> tags,
+        String status, OffsetDateTime lastSeen,
+        OffsetDateTime metricTs, Double cpu, Double ram, Double disk,
+        String node, Integer vmid, String vmState, Boolean qgaUp, String liveIp
+) {}
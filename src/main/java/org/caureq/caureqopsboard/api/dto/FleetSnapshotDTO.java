@@ -0,0 +1,6 @@
+package org.caureq.caureqopsboard.api.dto;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+
+public record FleetSnapshotDTO(long version, OffsetDateTime generatedAt, List<FleetAssetDTO> assets) {}
@@ -4,7 +4,10 @@ import jakarta.validation.constraints.DecimalMax;
 import jakarta.validation.constraints.DecimalMin;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.PositiveOrZero;
+import jakarta.validation.constraints.Size;
 
+import java.time.Instant;
 import java.util.Map;
 
 public record IngestDTO(
@@ -14,5 +17,8 @@ public record IngestDTO(
         @DecimalMin("0.0") @DecimalMax("100.0") double cpu,
         @DecimalMin("0.0") @DecimalMax("100.0") double ram,
         @DecimalMin("0.0") @DecimalMax("100.0") double disk,
-        Map<@NotBlank String, @NotBlank String> services // ex: {"Spooler":"up"}
+        Map<@NotBlank String, @NotBlank String> services, // ex: {"Spooler":"up"}
+        @Size(max = 128) String agentId,  // optional: stable agent identity for dedup
+        @PositiveOrZero Long seq,         // optional: per-agent monotonically increasing sequence
+        Instant ts                        // optional: sample time on the agent (skew-guarded)
 ) {}
\ No newline at end of file
@@ -0,0 +1,14 @@
+package org.caureq.caureqopsboard.api.dto;
+
+import java.time.Instant;
+import java.util.Map;
+
+/** One historical sample of an NDJSON import (one JSON object per line); cpu/ram/disk are required (null = missing). */
+public record MetricImportDTO(
+        String hostname,
+        Instant ts,          // horodatage d'origine (UTC)
+        Double cpu,
+        Double ram,
+        Double disk,
+        Map<String, String> services
+) {}
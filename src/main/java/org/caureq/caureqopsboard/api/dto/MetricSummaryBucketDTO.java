@@ -0,0 +1,11 @@
+package org.caureq.caureqopsboard.api.dto;
+
+import java.time.OffsetDateTime;
+
+public record MetricSummaryBucketDTO(
+        OffsetDateTime ts,   // start of the bucket
+        int points,
+        double cpuAvg, double cpuMax, double cpuP95,
+        double ramAvg, double ramMax, double ramP95,
+        double diskAvg, double diskMax, double diskP95
+) {}
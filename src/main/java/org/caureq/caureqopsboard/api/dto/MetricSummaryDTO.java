@@ -2,6 +2,7 @@ package org.caureq.caureqopsboard.api.dto;
 
 
 import java.time.OffsetDateTime;
+import java.util.List;
 
 public record MetricSummaryDTO(
         OffsetDateTime from,
@@ -9,5 +10,9 @@ public record MetricSummaryDTO(
         Double cpuAvg, Double cpuMax,
         Double ramAvg, Double ramMax,
         Double diskAvg, Double diskMax,
-        Integer points
+        Integer points,
+        Double cpuP50, Double cpuP95, Double cpuP99,
+        Double ramP50, Double ramP95, Double ramP99,
+        Double diskP50, Double diskP95, Double diskP99,
+        List<MetricSummaryBucketDTO> buckets   // only when a step is requested
 ) {}
@@ -0,0 +1,9 @@
+package org.caureq.caureqopsboard.api.dto;
+
+import java.time.OffsetDateTime;
+
+public record ServiceTransitionDTO(
+        String service,
+        String state,        // null = service no longer reported
+        OffsetDateTime ts
+) {}
@@ -2,5 +2,5 @@
 package org.caureq.caureqopsboard.api.error;
 public enum ErrorCode {
     BAD_REQUEST, VM_NOT_FOUND, PROXMOX_4XX, PROXMOX_5XX, AGENT_NOT_RUNNING,
-    TIMEOUT, AUTH_REQUIRED, FORBIDDEN, INTERNAL_ERROR
+    TIMEOUT, AUTH_REQUIRED, FORBIDDEN, PAYLOAD_TOO_LARGE, INTERNAL_ERROR
 }
@@ -2,8 +2,11 @@
 package org.caureq.caureqopsboard.api.error;
 
 import jakarta.servlet.http.HttpServletRequest;
+import org.caureq.caureqopsboard.config.RequestDecompressionFilter;
 import org.caureq.caureqopsboard.service.ProxmoxApiException;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import org.springframework.http.*;
+import org.springframework.http.converter.HttpMessageNotReadableException;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.*;
 
@@ -53,6 +56,17 @@ public class GlobalExceptionHandler {
         );
     }
 
+    @ExceptionHandler({HttpMessageNotReadableException.class, JsonProcessingException.class})
+    public ResponseEntity<ApiError> handleUnreadable(Exception ex, HttpServletRequest req) {
+        for (Throwable c = ex.getCause(); c != null; c = c.getCause()) { // @RequestBody wraps it
+            if (c instanceof RequestDecompressionFilter.BodyTooLargeException tooLarge) return handleTooLarge(tooLarge, req);
+        }
+        return ResponseEntity.badRequest().body(
+                build(ErrorCode.BAD_REQUEST, "Malformed request body", cid(req),
+                        Map.of("reason", String.valueOf(ex.getMessage())))
+        );
+    }
+
     @ExceptionHandler(IllegalArgumentException.class)
     public ResponseEntity<ApiError> handleIllegalArg(IllegalArgumentException ex,
                                                      HttpServletRequest req) {
@@ -61,6 +75,14 @@ public class GlobalExceptionHandler {
         );
     }
 
+    @ExceptionHandler(RequestDecompressionFilter.BodyTooLargeException.class)
+    public ResponseEntity<ApiError> handleTooLarge(RequestDecompressionFilter.BodyTooLargeException ex,
+                                                   HttpServletRequest req) {
+        return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(
+                build(ErrorCode.PAYLOAD_TOO_LARGE, ex.getMessage(), cid(req), Map.of())
+        );
+    }
+
     @ExceptionHandler(Exception.class)
     public ResponseEntity<ApiError> handleAny(Exception ex, HttpServletRequest req) {
         return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(
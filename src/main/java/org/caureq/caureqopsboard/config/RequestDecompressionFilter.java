@@ -0,0 +1,157 @@
+package org.caureq.caureqopsboard.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Transparent request-body decompression for ingest endpoints (Content-Encoding: gzip | deflate).
+ *
+ * The body is inflated lazily while the controller reads it (no buffering), and the
+ * decompressed size is capped by app.ingest.max-body-bytes to defuse zip bombs
+ * (BodyTooLargeException, answered with 413).
+ * Other encodings are answered with 415.
+ */
+@Component
+public class RequestDecompressionFilter extends OncePerRequestFilter {
+
+    @Value("${app.ingest.max-body-bytes:33554432}")
+    private long maxBodyBytes;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest req) {
+        return !req.getRequestURI().startsWith("/api/ingest");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest req, HttpServletResponse res, FilterChain chain)
+            throws ServletException, IOException {
+        var enc = req.getHeader(HttpHeaders.CONTENT_ENCODING);
+        if (enc == null || enc.isBlank() || "identity".equalsIgnoreCase(enc.trim())) {
+            chain.doFilter(req, res);
+            return;
+        }
+        var e = enc.trim().toLowerCase(Locale.ROOT);
+        if (!e.equals("gzip") && !e.equals("x-gzip") && !e.equals("deflate")) {
+            res.setStatus(HttpServletResponse.SC_UNSUPPORTED_MEDIA_TYPE);
+            res.setHeader("Accept-Encoding", "gzip, deflate");
+            res.setContentType("application/json");
+            res.getWriter().write("{\"error\":\"unsupported_encoding\",\"message\":\"Content-Encoding " + e + " not supported\"}");
+            return;
+        }
+        chain.doFilter(new DecompressedRequest(req, e.equals("deflate")), res);
+    }
+
+    private final class DecompressedRequest extends HttpServletRequestWrapper {
+        private final boolean deflate;
+        private ServletInputStream stream;
+
+        DecompressedRequest(HttpServletRequest req, boolean deflate) {
+            super(req);
+            this.deflate = deflate;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() throws IOException {
+            if (stream == null) {
+                var raw = super.getInputStream();
+                InputStream in = deflate ? new InflaterInputStream(raw) : new GZIPInputStream(raw, 8192);
+                stream = new LimitedServletInputStream(raw, in, maxBodyBytes);
+            }
+            return stream;
+        }
+
+        @Override
+        public BufferedReader getReader() throws IOException {
+            var cs = getCharacterEncoding() == null ? StandardCharsets.UTF_8.name() : getCharacterEncoding();
+            return new BufferedReader(new InputStreamReader(getInputStream(), cs));
+        }
+
+        // decoded length is unknown; hide the encoding so nothing downstream decodes twice
+        @Override public int getContentLength() { return -1; }
+        @Override public long getContentLengthLong() { return -1L; }
+
+        @Override
+        public String getHeader(String name) {
+            if (HttpHeaders.CONTENT_ENCODING.equalsIgnoreCase(name)
+                    || HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name)) return null;
+            return super.getHeader(name);
+        }
+
+        @Override
+        public Enumeration<String> getHeaders(String name) {
+            if (HttpHeaders.CONTENT_ENCODING.equalsIgnoreCase(name)
+                    || HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name)) return Collections.emptyEnumeration();
+            return super.getHeaders(name);
+        }
+    }
+
+    /** The decompressed body grew past app.ingest.max-body-bytes. */
+    public static final class BodyTooLargeException extends IOException {
+        public BodyTooLargeException(long max) {
+            super("decompressed body exceeds " + max + " bytes");
+        }
+    }
+
+    /**
+     * Async reads delegate to the compressed container stream: readiness and the listener callbacks
+     * describe compressed bytes, which the inflater consumes as they become available.
+     */
+    private static final class LimitedServletInputStream extends ServletInputStream {
+        private final ServletInputStream raw;
+        private final InputStream in;
+        private final long max;
+        private long count;
+        private boolean finished;
+
+        LimitedServletInputStream(ServletInputStream raw, InputStream in, long max) {
+            this.raw = raw;
+            this.in = in;
+            this.max = max;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b < 0) finished = true; else check(1);
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buf, int off, int len) throws IOException {
+            int n = in.read(buf, off, len);
+            if (n < 0) finished = true; else check(n);
+            return n;
+        }
+
+        private void check(int n) throws IOException {
+            count += n;
+            if (count > max) throw new BodyTooLargeException(max);
+        }
+
+        // only our own EOF: the compressed stream can be drained while the inflater still holds output
+        @Override public boolean isFinished() { return finished; }
+        @Override public boolean isReady() { return raw.isReady(); }
+        @Override public void setReadListener(ReadListener l) { raw.setReadListener(l); }
+        @Override public void close() throws IOException { in.close(); }
+    }
+}
@@ -10,7 +10,13 @@ import java.time.Instant;
 })
 @Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
 public class Metric {
-    @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
+    /** Ids handed out per sequence call; must match INCREMENT BY of metrics_seq. */
+    public static final int ID_ALLOCATION = 50;
+
+    // pooled sequence (not IDENTITY) so inserts can be JDBC-batched
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "metrics_seq")
+    @SequenceGenerator(name = "metrics_seq", sequenceName = "metrics_seq", allocationSize = ID_ALLOCATION)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY, optional = false)
@@ -22,7 +28,7 @@ public class Metric {
     private double disk;  // % libre (ou utilisé si tu préfères, mais sois cohérent)
 
     @Column(columnDefinition = "text")
-    private String services; // v1: "nginx:up;docker:down" (JSON à venir)
+    private String services; // legacy snapshot (imports / old rows); live states are in service_state
 
     @Column(nullable = false)
     private Instant ts;   // horodatage serveur
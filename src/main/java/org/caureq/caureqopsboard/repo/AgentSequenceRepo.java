@@ -0,0 +1,45 @@
+package org.caureq.caureqopsboard.repo;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Collection;
+import java.util.Optional;
+
+/**
+ * JDBC access to agent_sequence (per-agent ingest high-water mark and replay window).
+ */
+@Repository
+@RequiredArgsConstructor
+public class AgentSequenceRepo {
+    private final JdbcTemplate jdbc;
+
+    /** seenMask bit i set = sequence (highSeq - i) already accepted. */
+    public record Mark(String agentId, long highSeq, long seenMask) {}
+
+    public Optional<Mark> find(String agentId) {
+        return jdbc.query("select agent_id, high_seq, seen_mask from agent_sequence where agent_id = ?",
+                (rs, i) -> new Mark(rs.getString(1), rs.getLong(2), rs.getLong(3)), agentId).stream().findFirst();
+    }
+
+    /** Upsert marks; a stored mark is only replaced by a higher or equal high_seq. */
+    public void saveAll(Collection<Mark> marks) {
+        if (marks.isEmpty()) return;
+        var now = OffsetDateTime.ofInstant(Instant.now(), ZoneOffset.UTC);
+        jdbc.batchUpdate("""
+                insert into agent_sequence (agent_id, high_seq, seen_mask, updated_at) values (?, ?, ?, ?)
+                on conflict (agent_id) do update set high_seq = excluded.high_seq, seen_mask = excluded.seen_mask,
+                    updated_at = excluded.updated_at
+                where agent_sequence.high_seq <= excluded.high_seq""",
+                marks, marks.size(), (ps, m) -> {
+                    ps.setString(1, m.agentId());
+                    ps.setLong(2, m.highSeq());
+                    ps.setLong(3, m.seenMask());
+                    ps.setObject(4, now);
+                });
+    }
+}
@@ -4,10 +4,36 @@ import org.caureq.caureqopsboard.domain.AlertRecord;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.List;
 
 public interface AlertRepo extends JpaRepository<AlertRecord, String> {
     Page<AlertRecord> findAll(Pageable pageable);
     Page<AlertRecord> findByHostnameIgnoreCase(String hostname, Pageable pageable);
     Page<AlertRecord> findByAcknowledged(boolean acknowledged, Pageable pageable);
     Page<AlertRecord> findByHostnameIgnoreCaseAndAcknowledged(String hostname, boolean acknowledged, Pageable pageable);
+
+    /** First keyset page, newest first (ts, id); null host/ack = no filter. Use an unsorted page request. */
+    @Query("""
+            select a from AlertRecord a
+            where (:host is null or upper(a.hostname) = upper(:host))
+              and (:ack is null or a.acknowledged = :ack)
+            order by a.ts desc, a.id desc""")
+    List<AlertRecord> scroll(@Param("host") String host, @Param("ack") Boolean ack, Pageable page);
+
+    /**
+     * Keyset page after (ts, id), backed by idx_alert_ts_id / idx_alert_host_ts_id: the redundant
+     * a.ts <= :ts bound is what lets the index scan start at the position instead of the newest row.
+     */
+    @Query("""
+            select a from AlertRecord a
+            where (:host is null or upper(a.hostname) = upper(:host))
+              and (:ack is null or a.acknowledged = :ack)
+              and a.ts <= :ts and (a.ts < :ts or (a.ts = :ts and a.id < :id))
+            order by a.ts desc, a.id desc""")
+    List<AlertRecord> scrollAfter(@Param("host") String host, @Param("ack") Boolean ack,
+                                  @Param("ts") Instant ts, @Param("id") String id, Pageable page);
 }
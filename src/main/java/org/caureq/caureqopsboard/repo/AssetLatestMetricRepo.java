@@ -0,0 +1,63 @@
+package org.caureq.caureqopsboard.repo;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Connection;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.TreeMap;
+
+/**
+ * asset_latest_metric: the newest sample per asset, kept by the ingest paths
+ * so list pages join one row per asset instead of scanning metrics.
+ */
+@Repository
+@RequiredArgsConstructor
+public class AssetLatestMetricRepo {
+    private final JdbcTemplate jdbc;
+
+    public record Latest(long assetId, Instant ts, double cpu, double ram, double disk) {}
+
+    /**
+     * Keep the newest of the given samples per asset and upsert them with one statement;
+     * a stored sample is only replaced by a newer one (late replays do not move it back).
+     * @return number of rows inserted or updated
+     */
+    public int upsertNewest(Collection<Latest> samples) {
+        if (samples.isEmpty()) return 0;
+        var newest = new TreeMap<Long, Latest>(); // id order: concurrent batches lock rows in the same order
+        for (var s : samples) {
+            newest.merge(s.assetId(), s, (a, b) -> b.ts().isBefore(a.ts()) ? a : b);
+        }
+        int n = newest.size();
+        Long[] ids = new Long[n];
+        String[] ts = new String[n];
+        Double[] cpu = new Double[n], ram = new Double[n], disk = new Double[n];
+        int i = 0;
+        for (var s : newest.values()) {
+            ids[i] = s.assetId();
+            ts[i] = s.ts().toString();
+            cpu[i] = s.cpu();
+            ram[i] = s.ram();
+            disk[i] = s.disk();
+            i++;
+        }
+        return jdbc.execute((Connection c) -> {
+            try (var ps = c.prepareStatement("""
+                    insert into asset_latest_metric (asset_id, ts, cpu, ram, disk)
+                    select * from unnest(?::bigint[], ?::timestamptz[], ?::float8[], ?::float8[], ?::float8[])
+                    on conflict (asset_id) do update set
+                        ts = excluded.ts, cpu = excluded.cpu, ram = excluded.ram, disk = excluded.disk
+                    where asset_latest_metric.ts <= excluded.ts""")) {
+                ps.setArray(1, c.createArrayOf("bigint", ids));
+                ps.setArray(2, c.createArrayOf("text", ts));
+                ps.setArray(3, c.createArrayOf("float8", cpu));
+                ps.setArray(4, c.createArrayOf("float8", ram));
+                ps.setArray(5, c.createArrayOf("float8", disk));
+                return ps.executeUpdate();
+            }
+        });
+    }
+}
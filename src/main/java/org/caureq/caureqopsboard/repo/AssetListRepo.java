@@ -0,0 +1,236 @@
+package org.caureq.caureqopsboard.repo;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Asset list pages in one query: assets joined with asset_latest_metric, filtered
+ * (hostname, tags, last_seen ranges) and sorted in SQL before LIMIT/OFFSET so pages are always full.
+ * Hostname matches are lower(hostname) like '%q%', served by the trigram GIN index (V11).
+ */
+@Repository
+@RequiredArgsConstructor
+public class AssetListRepo {
+    private final JdbcTemplate jdbc;
+
+    /**
+     * @param q hostname substring (case-insensitive), or null
+     * @param tags lower-cased tags to require, empty for no tag filter
+     * @param allTags true: every tag must be present; false: any of them
+     * @param excludeTags lower-cased tags that exclude an asset
+     * @param seen last_seen ranges (OR'ed), empty for no status filter
+     */
+    public record Filter(String q, Collection<String> tags, boolean allTags, Collection<String> excludeTags,
+                         List<SeenRange> seen) {}
+
+    /** after < last_seen <= atOrBefore (null bounds are open); orNull also matches never-seen assets. */
+    public record SeenRange(Instant after, Instant atOrBefore, boolean orNull) {}
+
+    public enum SortKey {
+        HOSTNAME("a.hostname"), CPU("l.cpu"), RAM("l.ram"), DISK("l.disk"), LAST_SEEN("a.last_seen");
+
+        final String column;
+
+        SortKey(String column) { this.column = column; }
+    }
+
+    public record Row(long id, String hostname, String ip, String os, Instant lastSeen,
+                      Double cpu, Double ram, Double disk) {
+
+        /** Sort value of this row for a keyset cursor (null when the column is null). */
+        public String keyOf(SortKey sort) {
+            return switch (sort) {
+                case HOSTNAME -> hostname;
+                case CPU -> cpu == null ? null : cpu.toString();
+                case RAM -> ram == null ? null : ram.toString();
+                case DISK -> disk == null ? null : disk.toString();
+                case LAST_SEEN -> lastSeen == null ? null : lastSeen.toString();
+            };
+        }
+    }
+
+    /** Keyset position: sort value (null = null column) and hostname of the last row returned. */
+    public record After(String value, String hostname) {}
+
+    /**
+     * Rows ordered by key (nulls last), hostname breaking ties.
+     * After a non-null key, the page is filled from the non-null rows first (a range predicate the
+     * key's index can start from) and then, if short, from the trailing nulls in a second query.
+     * @param after keyset position to continue from (offset is then 0), or null
+     */
+    public List<Row> page(Filter f, SortKey sort, boolean desc, After after, int limit, int offset) {
+        var rows = query(f, sort, desc, after, limit, offset);
+        if (after != null && after.value() != null && sort != SortKey.HOSTNAME && rows.size() < limit) {
+            rows = new ArrayList<>(rows);
+            rows.addAll(query(f, sort, desc, new After(null, ""), limit - rows.size(), 0));
+        }
+        return rows;
+    }
+
+    private List<Row> query(Filter f, SortKey sort, boolean desc, After after, int limit, int offset) {
+        var sql = new StringBuilder("""
+                select a.id, a.hostname, a.ip, a.os, a.last_seen, l.cpu, l.ram, l.disk
+                from assets a left join asset_latest_metric l on l.asset_id = a.id
+                where true""");
+        List<Object> args = new ArrayList<>();
+        where(f, sql, args);
+        if (after != null) keyset(sort, desc, after, sql, args);
+        var dir = desc ? " desc" : " asc";
+        sql.append(" order by ");
+        if (sort != SortKey.HOSTNAME) sql.append(sort.column).append(dir).append(" nulls last, ");
+        sql.append("a.hostname").append(sort == SortKey.HOSTNAME ? dir : " asc");
+        sql.append(" limit ? offset ?");
+        args.add(limit);
+        args.add(offset);
+        return jdbc.query(c -> bind(c.prepareStatement(sql.toString()), c, args), (rs, i) -> {
+            var seen = rs.getObject(5, OffsetDateTime.class);
+            return new Row(rs.getLong(1), rs.getString(2), rs.getString(3), rs.getString(4),
+                    seen == null ? null : seen.toInstant(),
+                    rs.getObject(6, Double.class), rs.getObject(7, Double.class), rs.getObject(8, Double.class));
+        });
+    }
+
+    /** Number of assets matching the filter (for X-Total-Count). */
+    public long count(Filter f) {
+        var sql = new StringBuilder("select count(*) from assets a where true");
+        List<Object> args = new ArrayList<>();
+        where(f, sql, args);
+        var n = jdbc.query(c -> bind(c.prepareStatement(sql.toString()), c, args),
+                rs -> rs.next() ? rs.getLong(1) : 0L);
+        return n == null ? 0 : n;
+    }
+
+    private static void where(Filter f, StringBuilder sql, List<Object> args) {
+        if (f.q() != null && !f.q().isBlank()) {
+            sql.append(" and lower(a.hostname) like ? escape '\\'");
+            args.add("%" + likeEscape(f.q().trim().toLowerCase(java.util.Locale.ROOT)) + "%");
+        }
+        if (!f.tags().isEmpty()) {
+            if (f.allTags()) {
+                sql.append(" and a.id in (select asset_id from asset_tag where tag = any(?::text[])"
+                        + " group by asset_id having count(*) = ?)");
+                args.add(f.tags().toArray(String[]::new));
+                args.add(f.tags().size());
+            } else {
+                sql.append(" and exists (select 1 from asset_tag t where t.asset_id = a.id and t.tag = any(?::text[]))");
+                args.add(f.tags().toArray(String[]::new));
+            }
+        }
+        if (!f.excludeTags().isEmpty()) {
+            sql.append(" and not exists (select 1 from asset_tag t where t.asset_id = a.id and t.tag = any(?::text[]))");
+            args.add(f.excludeTags().toArray(String[]::new));
+        }
+        if (!f.seen().isEmpty()) {
+            List<String> ors = new ArrayList<>();
+            for (var r : f.seen()) {
+                List<String> ands = new ArrayList<>();
+                if (r.after() != null) { ands.add("a.last_seen > ?"); args.add(utc(r.after())); }
+                if (r.atOrBefore() != null) { ands.add("a.last_seen <= ?"); args.add(utc(r.atOrBefore())); }
+                var range = ands.isEmpty() ? "true" : String.join(" and ", ands);
+                ors.add(r.orNull() ? "(a.last_seen is null or (" + range + "))" : "(" + range + ")");
+            }
+            sql.append(" and (").append(String.join(" or ", ors)).append(")");
+        }
+    }
+
+    /**
+     * Rows strictly after the position in (key dir nulls last, hostname) order; after a non-null
+     * key only the non-null rows (page() continues with the nulls).
+     */
+    private static void keyset(SortKey sort, boolean desc, After after, StringBuilder sql, List<Object> args) {
+        if (sort == SortKey.HOSTNAME) {
+            sql.append(desc ? " and a.hostname < ?" : " and a.hostname > ?");
+            args.add(after.hostname());
+            return;
+        }
+        if (after.value() == null) { // already in the trailing nulls
+            sql.append(" and ").append(sort.column).append(" is null and a.hostname > ?");
+            args.add(after.hostname());
+            return;
+        }
+        Object v;
+        try {
+            v = sort == SortKey.LAST_SEEN ? utc(Instant.parse(after.value())) : Double.valueOf(after.value());
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("invalid cursor");
+        }
+        sql.append(" and ").append(sort.column).append(desc ? " <= ?" : " >= ?")
+                .append(" and (").append(sort.column).append(desc ? " < ?" : " > ?")
+                .append(" or (").append(sort.column).append(" = ? and a.hostname > ?))");
+        args.add(v);
+        args.add(v);
+        args.add(v);
+        args.add(after.hostname());
+    }
+
+    /** Every column the fleet snapshot serves, one row per asset. */
+    public record FleetRow(long id, String hostname, String ip, String os, String owner, String tags,
+                           String node, Integer vmid, Instant lastSeen,
+                           Instant metricTs, Double cpu, Double ram, Double disk) {}
+
+    /** @param ids assets to load, or null for all of them */
+    public List<FleetRow> fleet(Collection<Long> ids) {
+        var sql = new StringBuilder("""
+                select a.id, a.hostname, a.ip, a.os, a.owner, a.tags, a.node, a.vmid, a.last_seen,
+                       l.ts, l.cpu, l.ram, l.disk
+                from assets a left join asset_latest_metric l on l.asset_id = a.id""");
+        List<Object> args = new ArrayList<>();
+        if (ids != null) {
+            if (ids.isEmpty()) return List.of();
+            sql.append(" where a.id = any(?::bigint[])");
+            args.add(ids.toArray(Long[]::new));
+        }
+        return jdbc.query(c -> {
+            var ps = c.prepareStatement(sql.toString());
+            if (!args.isEmpty()) ps.setArray(1, c.createArrayOf("bigint", (Long[]) args.get(0)));
+            return ps;
+        }, (rs, i) -> {
+            var seen = rs.getObject(9, OffsetDateTime.class);
+            var ts = rs.getObject(10, OffsetDateTime.class);
+            return new FleetRow(rs.getLong(1), rs.getString(2), rs.getString(3), rs.getString(4),
+                    rs.getString(5), rs.getString(6), rs.getString(7), rs.getObject(8, Integer.class),
+                    seen == null ? null : seen.toInstant(), ts == null ? null : ts.toInstant(),
+                    rs.getObject(11, Double.class), rs.getObject(12, Double.class), rs.getObject(13, Double.class));
+        });
+    }
+
+    private static java.sql.PreparedStatement bind(java.sql.PreparedStatement ps, java.sql.Connection c,
+                                                   List<Object> args) throws java.sql.SQLException {
+        for (int i = 0; i < args.size(); i++) {
+            var v = args.get(i);
+            if (v instanceof String[] arr) ps.setArray(i + 1, c.createArrayOf("text", arr));
+            else ps.setObject(i + 1, v);
+        }
+        return ps;
+    }
+
+    private static OffsetDateTime utc(Instant ts) { return OffsetDateTime.ofInstant(ts, java.time.ZoneOffset.UTC); }
+
+    /**
+     * Hostnames containing q (prefix matches first), for typeahead. Queries of 3+ characters use
+     * the trigram index; shorter ones only match prefixes (pattern-ops index).
+     */
+    public List<String> suggest(String q, int limit) {
+        var needle = likeEscape(q.trim().toLowerCase(java.util.Locale.ROOT));
+        if (q.trim().length() < 3) {
+            return jdbc.queryForList("""
+                    select hostname from assets where lower(hostname) like ? escape '\\'
+                    order by lower(hostname) limit ?""", String.class, needle + "%", limit);
+        }
+        return jdbc.queryForList("""
+                select hostname from assets where lower(hostname) like ? escape '\\'
+                order by lower(hostname) like ? escape '\\' desc, lower(hostname) limit ?""",
+                String.class, "%" + needle + "%", needle + "%", limit);
+    }
+
+    private static String likeEscape(String s) {
+        return s.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
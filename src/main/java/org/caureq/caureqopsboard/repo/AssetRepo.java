@@ -1,14 +1,20 @@
 package org.caureq.caureqopsboard.repo;
 
 import org.caureq.caureqopsboard.domain.Asset;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface AssetRepo extends JpaRepository<Asset, Long> {
-    Optional<Asset> findByHostnameIgnoreCase(String hostname);
-    Page<Asset> findAll(Pageable pageable);
-    Page<Asset> findByHostnameContainingIgnoreCase(String hostname, Pageable pageable);
+    /** Case-insensitive match on lower(hostname), backed by idx_assets_hostname_lower. */
+    @Query("select a from Asset a where lower(a.hostname) = lower(:hostname)")
+    Optional<Asset> findByHostnameIgnoreCase(@Param("hostname") String hostname);
+
+    /** Bulk lookup by hostname; names must already be lower-cased. */
+    @Query("select a from Asset a where lower(a.hostname) in :names")
+    List<Asset> findByHostnameLowerIn(@Param("names") Collection<String> names);
 }
@@ -0,0 +1,57 @@
+package org.caureq.caureqopsboard.repo;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Connection;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * JDBC access to asset_tag, the normalised form of the assets.tags CSV.
+ */
+@Repository
+@RequiredArgsConstructor
+public class AssetTagRepo {
+    private final JdbcTemplate jdbc;
+
+    @FunctionalInterface
+    public interface Sink {
+        void accept(String tag, long assetId);
+    }
+
+    /** Tags of a CSV value: trimmed, lower-cased, de-duplicated, order kept. */
+    public static Set<String> parse(String csv) {
+        Set<String> tags = new LinkedHashSet<>();
+        if (csv == null || csv.isBlank()) return tags;
+        for (var t : csv.split(",")) {
+            var s = t.trim().toLowerCase(Locale.ROOT);
+            if (!s.isEmpty()) tags.add(s);
+        }
+        return tags;
+    }
+
+    /** Replace the tags of one asset. */
+    public void replace(long assetId, Collection<String> tags) {
+        jdbc.update("delete from asset_tag where asset_id = ?", assetId);
+        if (tags.isEmpty()) return;
+        jdbc.execute((Connection c) -> {
+            try (var ps = c.prepareStatement("""
+                    insert into asset_tag (asset_id, tag) select ?, t from unnest(?::text[]) as t
+                    on conflict do nothing""")) {
+                ps.setLong(1, assetId);
+                ps.setArray(2, c.createArrayOf("text", tags.toArray()));
+                return ps.executeUpdate();
+            }
+        });
+    }
+
+    public void all(Sink sink) {
+        jdbc.query("select tag, asset_id from asset_tag", rs -> {
+            sink.accept(rs.getString(1), rs.getLong(2));
+        });
+    }
+}
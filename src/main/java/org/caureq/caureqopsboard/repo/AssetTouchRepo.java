@@ -0,0 +1,59 @@
+package org.caureq.caureqopsboard.repo;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Connection;
+import java.time.Instant;
+import java.util.Collection;
+
+/**
+ * Write-only updates of the ingest-owned columns of assets (ip, os, last_seen),
+ * addressed by id so the ingest path never has to load the Asset entity.
+ */
+@Repository
+@RequiredArgsConstructor
+public class AssetTouchRepo {
+    private final JdbcTemplate jdbc;
+
+    /** ip/os == null keep the stored value; lastSeen never moves backwards. */
+    public record Touch(long assetId, String ip, String os, Instant lastSeen) {}
+
+    /**
+     * Apply all touches with one set-based UPDATE (rows joined from unnest'ed arrays).
+     * @return number of asset rows updated (unknown ids are ignored)
+     */
+    public int touchAll(Collection<Touch> touches) {
+        if (touches.isEmpty()) return 0;
+        int n = touches.size();
+        Long[] ids = new Long[n];
+        String[] ips = new String[n];
+        String[] oss = new String[n];
+        String[] seen = new String[n];
+        int i = 0;
+        for (var t : touches) {
+            ids[i] = t.assetId();
+            ips[i] = t.ip();
+            oss[i] = t.os();
+            seen[i] = t.lastSeen() == null ? null : t.lastSeen().toString();
+            i++;
+        }
+        return jdbc.execute((Connection c) -> {
+            try (var ps = c.prepareStatement("""
+                    update assets a set
+                        ip = coalesce(v.ip, a.ip),
+                        os = coalesce(v.os, a.os),
+                        last_seen = greatest(a.last_seen, v.last_seen)
+                    from unnest(?::bigint[], ?::text[], ?::text[], ?::timestamptz[])
+                         as v(id, ip, os, last_seen)
+                    where a.id = v.id""")) {
+                ps.setArray(1, c.createArrayOf("bigint", ids));
+                ps.setArray(2, c.createArrayOf("text", ips));
+                ps.setArray(3, c.createArrayOf("text", oss));
+                ps.setArray(4, c.createArrayOf("text", seen));
+                return ps.executeUpdate();
+            }
+        });
+    }
+}
@@ -0,0 +1,129 @@
+package org.caureq.caureqopsboard.repo;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * JDBC access to metric_chunk (compressed cold history, one row per asset and UTC day)
+ * and to the raw rows of a day that is being compacted.
+ */
+@Repository
+public class MetricChunkRepo {
+    private final JdbcTemplate jdbc;
+    /** Cursor-fetching template for whole-day raw scans (must run in a transaction). */
+    private final JdbcTemplate cursor;
+
+    public MetricChunkRepo(JdbcTemplate jdbc, DataSource dataSource,
+                           @Value("${app.metrics.export-fetch-size:2000}") int fetchSize) {
+        this.jdbc = jdbc;
+        this.cursor = new JdbcTemplate(dataSource);
+        this.cursor.setFetchSize(Math.max(100, fetchSize));
+    }
+
+    public record Chunk(long assetId, LocalDate day, int n, byte[] data) {}
+
+    @FunctionalInterface
+    public interface RawSink {
+        void accept(long assetId, long tsMillis, double cpu, double ram, double disk);
+    }
+
+    /** Chunks of one asset overlapping [from, to], oldest first. */
+    public List<Chunk> overlapping(long assetId, Instant from, Instant to) {
+        return jdbc.query("""
+                select asset_id, day, n, data from metric_chunk
+                where asset_id = ? and end_ts >= ? and start_ts <= ? order by day""",
+                (rs, i) -> new Chunk(rs.getLong(1), rs.getObject(2, LocalDate.class), rs.getInt(3), rs.getBytes(4)),
+                assetId, utc(from), utc(to));
+    }
+
+    /** Oldest chunk of one asset overlapping [from, to] after afterDay (null: from the start); one chunk per call. */
+    public Optional<Chunk> next(long assetId, Instant from, Instant to, LocalDate afterDay) {
+        return jdbc.query("""
+                select asset_id, day, n, data from metric_chunk
+                where asset_id = ? and end_ts >= ? and start_ts <= ? and day > coalesce(?::date, '-infinity')
+                order by day limit 1""",
+                (rs, i) -> new Chunk(rs.getLong(1), rs.getObject(2, LocalDate.class), rs.getInt(3), rs.getBytes(4)),
+                assetId, utc(from), utc(to), afterDay).stream().findFirst();
+    }
+
+    /** Newest chunk of one asset starting before ts (and older than beforeDay when given). */
+    public Optional<Chunk> previous(long assetId, Instant ts, LocalDate beforeDay) {
+        return jdbc.query("""
+                select asset_id, day, n, data from metric_chunk
+                where asset_id = ? and start_ts < ? and day < coalesce(?::date, 'infinity') order by day desc limit 1""",
+                (rs, i) -> new Chunk(rs.getLong(1), rs.getObject(2, LocalDate.class), rs.getInt(3), rs.getBytes(4)),
+                assetId, utc(ts), beforeDay).stream().findFirst();
+    }
+
+    public Optional<Chunk> find(long assetId, LocalDate day) {
+        return jdbc.query("select asset_id, day, n, data from metric_chunk where asset_id = ? and day = ?",
+                (rs, i) -> new Chunk(rs.getLong(1), rs.getObject(2, LocalDate.class), rs.getInt(3), rs.getBytes(4)),
+                assetId, day).stream().findFirst();
+    }
+
+    public void upsert(long assetId, LocalDate day, Instant start, Instant end, int n, byte[] data) {
+        jdbc.update("""
+                insert into metric_chunk (asset_id, day, start_ts, end_ts, n, data) values (?, ?, ?, ?, ?, ?)
+                on conflict (asset_id, day) do update set start_ts = excluded.start_ts, end_ts = excluded.end_ts,
+                    n = excluded.n, data = excluded.data""",
+                assetId, day, utc(start), utc(end), n, data);
+    }
+
+    /** Raw rows of one UTC day (all partitions incl. default), ordered by asset then time. */
+    public void rawDay(LocalDate day, RawSink sink) {
+        var from = day.atStartOfDay().atOffset(ZoneOffset.UTC);
+        cursor.query("""
+                select asset_id, ts, cpu, ram, disk from metrics
+                where ts >= ? and ts < ? order by asset_id, ts""", rs -> {
+            sink.accept(rs.getLong(1), rs.getObject(2, OffsetDateTime.class).toInstant().toEpochMilli(),
+                    rs.getDouble(3), rs.getDouble(4), rs.getDouble(5));
+        }, from, from.plusDays(1));
+    }
+
+    /** Raw rows of one asset on one UTC day, oldest first (compacted days: late rows in the default partition). */
+    public void rawDay(long assetId, LocalDate day, RawSink sink) {
+        var from = day.atStartOfDay().atOffset(ZoneOffset.UTC);
+        jdbc.query("""
+                select ts, cpu, ram, disk from metrics
+                where asset_id = ? and ts >= ? and ts < ? order by ts""", rs -> {
+            sink.accept(assetId, rs.getObject(1, OffsetDateTime.class).toInstant().toEpochMilli(),
+                    rs.getDouble(2), rs.getDouble(3), rs.getDouble(4));
+        }, assetId, from, from.plusDays(1));
+    }
+
+    /** Assets with a chunk or raw rows on the day. */
+    public List<Long> assetsOfDay(LocalDate day) {
+        var from = day.atStartOfDay().atOffset(ZoneOffset.UTC);
+        return jdbc.queryForList("""
+                select asset_id from metric_chunk where day = ?
+                union select distinct asset_id from metrics where ts >= ? and ts < ?""",
+                Long.class, day, from, from.plusDays(1));
+    }
+
+    /** Days before `before` that still have raw rows in the default partition. */
+    public List<LocalDate> defaultPartitionDays(LocalDate before) {
+        return jdbc.queryForList("""
+                select distinct (ts at time zone 'UTC')::date from metrics_default where ts < ?""",
+                LocalDate.class, before.atStartOfDay().atOffset(ZoneOffset.UTC));
+    }
+
+    public int deleteDefaultRows(LocalDate day) {
+        var from = day.atStartOfDay().atOffset(ZoneOffset.UTC);
+        return jdbc.update("delete from metrics_default where ts >= ? and ts < ?", from, from.plusDays(1));
+    }
+
+    public int purge(LocalDate before) {
+        return jdbc.update("delete from metric_chunk where day < ?", before);
+    }
+
+    private static OffsetDateTime utc(Instant ts) { return OffsetDateTime.ofInstant(ts, ZoneOffset.UTC); }
+}
@@ -0,0 +1,56 @@
+package org.caureq.caureqopsboard.repo;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Collection;
+
+/**
+ * Forward-only cursor over raw metrics for exports.
+ *
+ * Rows are fetched app.metrics.export-fetch-size at a time (PostgreSQL only honours the fetch
+ * size inside a transaction, so callers must be @Transactional) and handed to the sink one by one.
+ */
+@Repository
+public class MetricExportRepo {
+    private final JdbcTemplate jdbc;
+
+    public MetricExportRepo(DataSource dataSource,
+                            @Value("${app.metrics.export-fetch-size:2000}") int fetchSize) {
+        this.jdbc = new JdbcTemplate(dataSource);
+        this.jdbc.setFetchSize(Math.max(100, fetchSize));
+    }
+
+    @FunctionalInterface
+    public interface RowSink {
+        void accept(long assetId, Instant ts, double cpu, double ram, double disk) throws IOException;
+    }
+
+    /** Rows of the given assets in [from, to], ordered by asset then time. */
+    public void stream(Collection<Long> assetIds, Instant from, Instant to, RowSink sink) {
+        jdbc.query(c -> {
+            var ps = c.prepareStatement("""
+                    select asset_id, ts, cpu, ram, disk from metrics
+                    where asset_id = any(?) and ts >= ? and ts <= ?
+                    order by asset_id, ts""");
+            ps.setArray(1, c.createArrayOf("bigint", assetIds.toArray()));
+            ps.setObject(2, OffsetDateTime.ofInstant(from, ZoneOffset.UTC));
+            ps.setObject(3, OffsetDateTime.ofInstant(to, ZoneOffset.UTC));
+            return ps;
+        }, rs -> {
+            try {
+                sink.accept(rs.getLong(1), rs.getObject(2, OffsetDateTime.class).toInstant(),
+                        rs.getDouble(3), rs.getDouble(4), rs.getDouble(5));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e); // client went away: stop the cursor
+            }
+        });
+    }
+}
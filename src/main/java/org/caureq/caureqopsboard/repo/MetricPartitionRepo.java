@@ -0,0 +1,80 @@
+package org.caureq.caureqopsboard.repo;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+/**
+ * DDL for the daily partitions of metrics (metrics_pYYYYMMDD, bounds in UTC).
+ */
+@Repository
+@RequiredArgsConstructor
+public class MetricPartitionRepo {
+    public static final String PREFIX = "metrics_p";
+    public static final String DEFAULT_PARTITION = "metrics_default";
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    private final JdbcTemplate jdbc;
+
+    public static String partitionName(LocalDate day) { return PREFIX + SUFFIX.format(day); }
+
+    /** Day covered by a partition name, or null for anything not following the naming scheme. */
+    public static LocalDate dayOf(String partition) {
+        if (!partition.startsWith(PREFIX) || partition.length() != PREFIX.length() + 8) return null;
+        try { return LocalDate.parse(partition.substring(PREFIX.length()), SUFFIX); }
+        catch (Exception e) { return null; }
+    }
+
+    public List<String> listPartitions() {
+        return jdbc.queryForList("""
+                select c.relname from pg_inherits i
+                join pg_class c on c.oid = i.inhrelid
+                join pg_class p on p.oid = i.inhparent
+                where p.relname = 'metrics'""", String.class);
+    }
+
+    /**
+     * Create the partition for one UTC day. Rows of that day sitting in the default partition
+     * are moved into it first, since PostgreSQL refuses to attach over them.
+     */
+    @Transactional
+    public void createPartition(LocalDate day) {
+        var name = partitionName(day);
+        var from = day.atStartOfDay().atOffset(ZoneOffset.UTC);
+        var to = from.plusDays(1);
+        jdbc.execute("create table " + name + " (like metrics including defaults including constraints)");
+        jdbc.update("with moved as (delete from " + DEFAULT_PARTITION + " where ts >= ? and ts < ? returning *) "
+                + "insert into " + name + " select * from moved", from, to);
+        jdbc.execute("alter table metrics attach partition " + name
+                + " for values from ('" + bound(from) + "') to ('" + bound(to) + "')");
+    }
+
+    public void dropPartition(String name) {
+        if (dayOf(name) == null) throw new IllegalArgumentException("not a daily metrics partition: " + name);
+        jdbc.execute("drop table if exists " + name);
+    }
+
+    /**
+     * Lock the day's partition (when it exists) and the default partition against writers until
+     * the transaction ends: INSERT/COPY/DELETE wait, and writers already in flight are waited for.
+     */
+    public void lockDay(LocalDate day) {
+        var name = partitionName(day);
+        var tables = listPartitions().contains(name) ? name + ", " + DEFAULT_PARTITION : DEFAULT_PARTITION;
+        jdbc.execute("lock table " + tables + " in share row exclusive mode");
+    }
+
+    /** Retention for stray rows in the default partition. */
+    public int purgeDefault(OffsetDateTime before) {
+        return jdbc.update("delete from " + DEFAULT_PARTITION + " where ts < ?", before);
+    }
+
+    private static String bound(OffsetDateTime t) { return t.toLocalDate() + " 00:00:00+00"; }
+}
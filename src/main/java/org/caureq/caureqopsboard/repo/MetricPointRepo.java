@@ -0,0 +1,64 @@
+package org.caureq.caureqopsboard.repo;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Raw chart reads as primitives: only ts/cpu/ram/disk by asset_id, no Metric entities
+ * (no persistence context, no Asset proxy, no services column).
+ */
+@Repository
+@RequiredArgsConstructor
+public class MetricPointRepo {
+    private final JdbcTemplate jdbc;
+
+    @FunctionalInterface
+    public interface Sink {
+        void accept(long tsMillis, double cpu, double ram, double disk);
+    }
+
+    @FunctionalInterface
+    public interface IdSink {
+        void accept(long id, Instant ts, double cpu, double ram, double disk);
+    }
+
+    /**
+     * Up to limit samples of one asset before the keyset position (ts, id), newest first
+     * (idx_metric_asset_ts; the redundant ts <= ? bound starts the index scan at the position).
+     * id == null: strictly before ts.
+     */
+    public void before(long assetId, Instant ts, Long id, int limit, IdSink sink) {
+        var at = utc(ts);
+        RowCallbackHandler rch = rs -> sink.accept(rs.getLong(1), rs.getObject(2, OffsetDateTime.class).toInstant(),
+                rs.getDouble(3), rs.getDouble(4), rs.getDouble(5));
+        if (id == null) {
+            jdbc.query("""
+                    select id, ts, cpu, ram, disk from metrics
+                    where asset_id = ? and ts < ? order by ts desc, id desc limit ?""", rch, assetId, at, limit);
+        } else {
+            jdbc.query("""
+                    select id, ts, cpu, ram, disk from metrics
+                    where asset_id = ? and ts <= ? and (ts < ? or (ts = ? and id < ?))
+                    order by ts desc, id desc limit ?""",
+                    rch, assetId, at, at, at, id, limit);
+        }
+    }
+
+    /** Samples of one asset in [from, to], oldest first. */
+    public void range(long assetId, Instant from, Instant to, Sink sink) {
+        jdbc.query("""
+                select ts, cpu, ram, disk from metrics
+                where asset_id = ? and ts between ? and ? order by ts""", rs -> {
+            sink.accept(rs.getObject(1, OffsetDateTime.class).toInstant().toEpochMilli(),
+                    rs.getDouble(2), rs.getDouble(3), rs.getDouble(4));
+        }, assetId, utc(from), utc(to));
+    }
+
+    private static OffsetDateTime utc(Instant ts) { return OffsetDateTime.ofInstant(ts, ZoneOffset.UTC); }
+}
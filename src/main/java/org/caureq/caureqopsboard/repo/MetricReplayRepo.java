@@ -0,0 +1,56 @@
+package org.caureq.caureqopsboard.repo;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Collection;
+
+/**
+ * Replay dedup support: per-asset advisory locks and the stored sample timestamps a replay is
+ * deduplicated against (IngestService.replayStream).
+ */
+@Repository
+@RequiredArgsConstructor
+public class MetricReplayRepo {
+    private final JdbcTemplate jdbc;
+
+    @FunctionalInterface
+    public interface TsSink {
+        void accept(long assetId, long tsMillis);
+    }
+
+    /**
+     * Transaction-scoped advisory locks on the given assets (taken in id order), so concurrent
+     * replays of the same host see each other's rows when deduplicating. Keys are bigint hashes
+     * of 'replay:<id>' (single-key form, any asset id fits).
+     */
+    public void lock(Collection<Long> assetIds) {
+        var ids = assetIds.toArray(Long[]::new);
+        jdbc.query(c -> {
+            var ps = c.prepareStatement("""
+                    select pg_advisory_xact_lock(hashtextextended('replay:' || id, 0))
+                    from (select distinct unnest(?::bigint[]) as id order by 1) s""");
+            ps.setArray(1, c.createArrayOf("bigint", ids));
+            return ps;
+        }, (RowCallbackHandler) rs -> {});
+    }
+
+    /** Sample timestamps of the given assets in [from, to] (hot rows only; see MetricChunkRepo for cold days). */
+    public void timestamps(Collection<Long> assetIds, Instant from, Instant to, TsSink sink) {
+        var ids = assetIds.toArray(Long[]::new);
+        jdbc.query(c -> {
+            var ps = c.prepareStatement("select asset_id, ts from metrics where asset_id = any(?::bigint[]) and ts between ? and ?");
+            ps.setArray(1, c.createArrayOf("bigint", ids));
+            ps.setObject(2, utc(from));
+            ps.setObject(3, utc(to));
+            return ps;
+        }, (RowCallbackHandler) rs -> sink.accept(rs.getLong(1), rs.getObject(2, OffsetDateTime.class).toInstant().toEpochMilli()));
+    }
+
+    private static OffsetDateTime utc(Instant ts) { return OffsetDateTime.ofInstant(ts, ZoneOffset.UTC); }
+}
@@ -0,0 +1,172 @@
+package org.caureq.caureqopsboard.repo;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * JDBC access to the metric rollup tables (metrics_1m, metrics_15m, metrics_1h) and the
+ * dirty-range queue used to re-aggregate late raw data.
+ */
+@Repository
+@RequiredArgsConstructor
+public class MetricRollupRepo {
+    private final JdbcTemplate jdbc;
+
+    /** Rollup levels, finest first; each is aggregated from the previous one (1m from raw). */
+    public enum Resolution {
+        M1("metrics_1m", Duration.ofMinutes(1), "1 minute"),
+        M15("metrics_15m", Duration.ofMinutes(15), "15 minutes"),
+        H1("metrics_1h", Duration.ofHours(1), "1 hour");
+
+        public final String table;
+        public final Duration step;
+        final String interval;
+
+        Resolution(String table, Duration step, String interval) {
+            this.table = table;
+            this.step = step;
+            this.interval = interval;
+        }
+
+        /** Start of the bucket containing ts (buckets are aligned on the epoch, UTC). */
+        public Instant floor(Instant ts) {
+            long s = step.getSeconds();
+            return Instant.ofEpochSecond(Math.floorDiv(ts.getEpochSecond(), s) * s);
+        }
+    }
+
+    public record Point(Instant bucket, int n,
+                        double cpuAvg, double cpuMin, double cpuMax,
+                        double ramAvg, double ramMin, double ramMax,
+                        double diskAvg, double diskMin, double diskMax) {}
+
+    /** A queued dirty range (id of its metric_rollup_dirty row); assetIds null when unknown. */
+    public record Range(long id, Instant from, Instant to, List<Long> assetIds) {}
+
+    /** count/sum/min/max of one bucket, as stored in every rollup table. */
+    public record Bucket(Instant bucket, int n,
+                         double cpuSum, double cpuMin, double cpuMax,
+                         double ramSum, double ramMin, double ramMax,
+                         double diskSum, double diskMin, double diskMax) {}
+
+    private static final String UPSERT = """
+            on conflict (asset_id, bucket) do update set n = excluded.n,
+                cpu_sum = excluded.cpu_sum, cpu_min = excluded.cpu_min, cpu_max = excluded.cpu_max,
+                ram_sum = excluded.ram_sum, ram_min = excluded.ram_min, ram_max = excluded.ram_max,
+                disk_sum = excluded.disk_sum, disk_min = excluded.disk_min, disk_max = excluded.disk_max""";
+
+    /**
+     * Recompute every bucket of the level in [from, to) from the level below (idempotent).
+     * from/to must be aligned on the level's step.
+     * @return number of buckets written
+     */
+    public int refresh(Resolution res, Instant from, Instant to) {
+        String sql;
+        if (res == Resolution.M1) {
+            sql = """
+                    insert into metrics_1m (asset_id, bucket, n, cpu_sum, cpu_min, cpu_max,
+                        ram_sum, ram_min, ram_max, disk_sum, disk_min, disk_max)
+                    select asset_id, date_bin('1 minute', ts, timestamptz '2000-01-01 00:00:00+00'), count(*),
+                        sum(cpu), min(cpu), max(cpu), sum(ram), min(ram), max(ram), sum(disk), min(disk), max(disk)
+                    from metrics where ts >= ? and ts < ?
+                    group by 1, 2
+                    """ + UPSERT;
+        } else {
+            var below = Resolution.values()[res.ordinal() - 1];
+            sql = """
+                    insert into %s (asset_id, bucket, n, cpu_sum, cpu_min, cpu_max,
+                        ram_sum, ram_min, ram_max, disk_sum, disk_min, disk_max)
+                    select asset_id, date_bin('%s', bucket, timestamptz '2000-01-01 00:00:00+00'), sum(n),
+                        sum(cpu_sum), min(cpu_min), max(cpu_max), sum(ram_sum), min(ram_min), max(ram_max),
+                        sum(disk_sum), min(disk_min), max(disk_max)
+                    from %s where bucket >= ? and bucket < ?
+                    group by 1, 2
+                    """.formatted(res.table, res.interval, below.table) + UPSERT;
+        }
+        return jdbc.update(sql, utc(from), utc(to));
+    }
+
+    /** Buckets of one asset in [from, to], oldest first. */
+    public List<Point> series(Resolution res, long assetId, Instant from, Instant to) {
+        return jdbc.query("select bucket, n, cpu_sum / n, cpu_min, cpu_max, ram_sum / n, ram_min, ram_max, "
+                        + "disk_sum / n, disk_min, disk_max from " + res.table
+                        + " where asset_id = ? and bucket >= ? and bucket <= ? order by bucket",
+                (rs, i) -> new Point(rs.getObject(1, OffsetDateTime.class).toInstant(), rs.getInt(2),
+                        rs.getDouble(3), rs.getDouble(4), rs.getDouble(5),
+                        rs.getDouble(6), rs.getDouble(7), rs.getDouble(8),
+                        rs.getDouble(9), rs.getDouble(10), rs.getDouble(11)),
+                assetId, utc(res.floor(from)), utc(to));
+    }
+
+    public int purge(Resolution res, Instant before) {
+        return jdbc.update("delete from " + res.table + " where bucket < ?", utc(before));
+    }
+
+    /**
+     * Upsert buckets of one asset computed outside SQL (compacted days, see MetricRollupEngine).
+     * @return number of buckets written
+     */
+    public int upsert(Resolution res, long assetId, List<Bucket> buckets) {
+        if (buckets.isEmpty()) return 0;
+        var sql = "insert into " + res.table + " (asset_id, bucket, n, cpu_sum, cpu_min, cpu_max, "
+                + "ram_sum, ram_min, ram_max, disk_sum, disk_min, disk_max) "
+                + "values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) " + UPSERT;
+        jdbc.batchUpdate(sql, buckets, 500, (ps, b) -> {
+            ps.setLong(1, assetId);
+            ps.setObject(2, utc(b.bucket()));
+            ps.setInt(3, b.n());
+            ps.setDouble(4, b.cpuSum()); ps.setDouble(5, b.cpuMin()); ps.setDouble(6, b.cpuMax());
+            ps.setDouble(7, b.ramSum()); ps.setDouble(8, b.ramMin()); ps.setDouble(9, b.ramMax());
+            ps.setDouble(10, b.diskSum()); ps.setDouble(11, b.diskMin()); ps.setDouble(12, b.diskMax());
+        });
+        return buckets.size();
+    }
+
+    /**
+     * Queue a raw range for re-aggregation (same transaction as the raw write).
+     * @param assetIds assets written, or null when unknown
+     */
+    public void markDirty(Instant from, Instant to, Collection<Long> assetIds) {
+        jdbc.update(c -> {
+            var ps = c.prepareStatement("insert into metric_rollup_dirty (from_ts, to_ts, asset_ids) values (?, ?, ?)");
+            ps.setObject(1, utc(from));
+            ps.setObject(2, utc(to));
+            ps.setArray(3, assetIds == null ? null : c.createArrayOf("bigint", assetIds.toArray(Long[]::new)));
+            return ps;
+        });
+    }
+
+    /**
+     * Queued dirty ranges, oldest first. Rows stay queued until clearDirty(): a crash or shutdown
+     * mid-refresh leaves them for the next run (re-aggregation is idempotent).
+     */
+    public List<Range> dirty() {
+        return jdbc.query("select id, from_ts, to_ts, asset_ids from metric_rollup_dirty order by id",
+                (rs, i) -> {
+                    var ids = rs.getArray(4);
+                    return new Range(rs.getLong(1), rs.getObject(2, OffsetDateTime.class).toInstant(),
+                            rs.getObject(3, OffsetDateTime.class).toInstant(),
+                            ids == null ? null : List.of((Long[]) ids.getArray()));
+                });
+    }
+
+    /** Record progress on a dirty range: everything before from has been re-aggregated. */
+    public void advanceDirty(long id, Instant from) {
+        jdbc.update("update metric_rollup_dirty set from_ts = ? where id = ?", utc(from), id);
+    }
+
+    /** Drop a dirty range once it has been fully re-aggregated. */
+    public void clearDirty(long id) {
+        jdbc.update("delete from metric_rollup_dirty where id = ?", id);
+    }
+
+    private static OffsetDateTime utc(Instant ts) { return OffsetDateTime.ofInstant(ts, ZoneOffset.UTC); }
+}
@@ -0,0 +1,101 @@
+package org.caureq.caureqopsboard.repo;
+
+import lombok.RequiredArgsConstructor;
+import org.caureq.caureqopsboard.repo.MetricRollupRepo.Resolution;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+/**
+ * Aggregate statistics over raw metrics computed in PostgreSQL (one range scan, no rows on the heap).
+ * Ranges reaching compacted history (raw rows gone into chunks) are aggregated from a rollup
+ * table instead: avg, max and point counts stay exact, percentiles are taken over bucket averages.
+ */
+@Repository
+@RequiredArgsConstructor
+public class MetricStatsRepo {
+    private final JdbcTemplate jdbc;
+
+    /** avg / max / p50 / p95 / p99 of one metric; all null when there are no points. */
+    public record Stat(Double avg, Double max, Double p50, Double p95, Double p99) {}
+    public record Summary(int points, Stat cpu, Stat ram, Stat disk) {}
+    public record Bucket(Instant ts, int points,
+                         double cpuAvg, double cpuMax, double cpuP95,
+                         double ramAvg, double ramMax, double ramP95,
+                         double diskAvg, double diskMax, double diskP95) {}
+
+    private static final String PCT = "percentile_cont(array[0.5, 0.95, 0.99]::float8[]) within group (order by %s)";
+
+    public Summary summary(long assetId, Instant from, Instant to) {
+        var sql = "select count(*), "
+                + "avg(cpu), max(cpu), " + PCT.formatted("cpu") + ", "
+                + "avg(ram), max(ram), " + PCT.formatted("ram") + ", "
+                + "avg(disk), max(disk), " + PCT.formatted("disk")
+                + " from metrics where asset_id = ? and ts >= ? and ts <= ?";
+        return jdbc.queryForObject(sql, (rs, i) -> new Summary(rs.getInt(1),
+                stat(rs, 2), stat(rs, 5), stat(rs, 8)), assetId, utc(from), utc(to));
+    }
+
+    /** Per-bucket aggregates; buckets are aligned on the epoch (UTC) and empty ones are omitted. */
+    public List<Bucket> buckets(long assetId, Instant from, Instant to, Duration step) {
+        var sql = """
+                select date_bin(?::interval, ts, timestamptz '2000-01-01 00:00:00+00') as b, count(*),
+                    avg(cpu), max(cpu), percentile_cont(0.95) within group (order by cpu),
+                    avg(ram), max(ram), percentile_cont(0.95) within group (order by ram),
+                    avg(disk), max(disk), percentile_cont(0.95) within group (order by disk)
+                from metrics where asset_id = ? and ts >= ? and ts <= ?
+                group by b order by b""";
+        return jdbc.query(sql, (rs, i) -> new Bucket(rs.getObject(1, OffsetDateTime.class).toInstant(), rs.getInt(2),
+                        rs.getDouble(3), rs.getDouble(4), rs.getDouble(5),
+                        rs.getDouble(6), rs.getDouble(7), rs.getDouble(8),
+                        rs.getDouble(9), rs.getDouble(10), rs.getDouble(11)),
+                step.getSeconds() + " seconds", assetId, utc(from), utc(to));
+    }
+
+    /**
+     * summary() over the rollup buckets of [res.floor(from), to]: avg = sum / n and max are exact
+     * for whole buckets, percentiles are over the bucket averages (approximate, flattened by the width).
+     */
+    public Summary summary(Resolution res, long assetId, Instant from, Instant to) {
+        var sql = "select coalesce(sum(n), 0), "
+                + "sum(cpu_sum) / nullif(sum(n), 0), max(cpu_max), " + PCT.formatted("cpu_sum / n") + ", "
+                + "sum(ram_sum) / nullif(sum(n), 0), max(ram_max), " + PCT.formatted("ram_sum / n") + ", "
+                + "sum(disk_sum) / nullif(sum(n), 0), max(disk_max), " + PCT.formatted("disk_sum / n")
+                + " from " + res.table + " where asset_id = ? and bucket >= ? and bucket <= ?";
+        return jdbc.queryForObject(sql, (rs, i) -> new Summary(rs.getInt(1),
+                stat(rs, 2), stat(rs, 5), stat(rs, 8)), assetId, utc(res.floor(from)), utc(to));
+    }
+
+    /** buckets() over rollup buckets (same approximation as the rollup summary); steps below res.step yield one bucket per row. */
+    public List<Bucket> buckets(Resolution res, long assetId, Instant from, Instant to, Duration step) {
+        var sql = """
+                select date_bin(?::interval, bucket, timestamptz '2000-01-01 00:00:00+00') as b, sum(n),
+                    sum(cpu_sum) / sum(n), max(cpu_max), percentile_cont(0.95) within group (order by cpu_sum / n),
+                    sum(ram_sum) / sum(n), max(ram_max), percentile_cont(0.95) within group (order by ram_sum / n),
+                    sum(disk_sum) / sum(n), max(disk_max), percentile_cont(0.95) within group (order by disk_sum / n)
+                from %s where asset_id = ? and bucket >= ? and bucket <= ?
+                group by b order by b""".formatted(res.table);
+        return jdbc.query(sql, (rs, i) -> new Bucket(rs.getObject(1, OffsetDateTime.class).toInstant(), rs.getInt(2),
+                        rs.getDouble(3), rs.getDouble(4), rs.getDouble(5),
+                        rs.getDouble(6), rs.getDouble(7), rs.getDouble(8),
+                        rs.getDouble(9), rs.getDouble(10), rs.getDouble(11)),
+                step.getSeconds() + " seconds", assetId, utc(res.floor(from)), utc(to));
+    }
+
+    private static Stat stat(ResultSet rs, int col) throws SQLException {
+        Double avg = (Double) rs.getObject(col);
+        Double max = (Double) rs.getObject(col + 1);
+        var arr = rs.getArray(col + 2);
+        Double[] p = arr == null ? null : (Double[]) arr.getArray();
+        return p == null ? new Stat(avg, max, null, null, null) : new Stat(avg, max, p[0], p[1], p[2]);
+    }
+
+    private static OffsetDateTime utc(Instant ts) { return OffsetDateTime.ofInstant(ts, ZoneOffset.UTC); }
+}
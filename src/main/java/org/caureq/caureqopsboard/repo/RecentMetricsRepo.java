@@ -0,0 +1,45 @@
+package org.caureq.caureqopsboard.repo;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.time.OffsetDateTime;
+
+/**
+ * Reads the newest raw samples per asset as primitives (used to fill RecentMetricsBuffer).
+ */
+@Repository
+@RequiredArgsConstructor
+public class RecentMetricsRepo {
+    private final JdbcTemplate jdbc;
+
+    @FunctionalInterface
+    public interface Sink {
+        void accept(long assetId, long tsMillis, double cpu, double ram, double disk);
+    }
+
+    /** Up to n newest samples of every asset, oldest first within an asset. */
+    public void newestPerAsset(int n, Sink sink) {
+        jdbc.query("""
+                select a.id, m.ts, m.cpu, m.ram, m.disk from assets a
+                cross join lateral (
+                    select ts, cpu, ram, disk from metrics where asset_id = a.id order by ts desc limit ?
+                ) m
+                order by a.id, m.ts""", rs -> {
+            sink.accept(rs.getLong(1), rs.getObject(2, OffsetDateTime.class).toInstant().toEpochMilli(),
+                    rs.getDouble(3), rs.getDouble(4), rs.getDouble(5));
+        }, n);
+    }
+
+    /** Up to n newest samples of one asset, oldest first. */
+    public void newest(long assetId, int n, Sink sink) {
+        jdbc.query("""
+                select ts, cpu, ram, disk from (
+                    select ts, cpu, ram, disk from metrics where asset_id = ? order by ts desc limit ?
+                ) m order by ts""", rs -> {
+            sink.accept(assetId, rs.getObject(1, OffsetDateTime.class).toInstant().toEpochMilli(),
+                    rs.getDouble(2), rs.getDouble(3), rs.getDouble(4));
+        }, assetId, n);
+    }
+}
@@ -0,0 +1,99 @@
+package org.caureq.caureqopsboard.repo;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Connection;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * JDBC access to the normalised service tables (service_catalog, service_state, service_transition).
+ */
+@Repository
+@RequiredArgsConstructor
+public class ServiceStateRepo {
+    private final JdbcTemplate jdbc;
+
+    public record CatalogEntry(int id, String name) {}
+    public record StateRow(long assetId, int serviceId, String state) {}
+    /** state == null means the service disappeared from the agent report. */
+    public record Change(long assetId, int serviceId, String state, Instant ts) {}
+    public record TransitionRow(String service, String state, Instant ts) {}
+
+    public List<CatalogEntry> loadCatalog() {
+        return jdbc.query("select id, name from service_catalog",
+                (rs, i) -> new CatalogEntry(rs.getInt(1), rs.getString(2)));
+    }
+
+    /** Insert the name if new and return its id (safe under concurrent inserts). */
+    public int ensureService(String name) {
+        jdbc.update("insert into service_catalog (name) values (?) on conflict (name) do nothing", name);
+        return jdbc.queryForObject("select id from service_catalog where name = ?", Integer.class, name);
+    }
+
+    public void loadStates(Collection<Long> assetIds, Consumer<StateRow> sink) {
+        if (assetIds.isEmpty()) return;
+        jdbc.query((Connection c) -> {
+            var ps = c.prepareStatement("select asset_id, service_id, state from service_state where asset_id = any(?)");
+            ps.setArray(1, c.createArrayOf("bigint", assetIds.toArray()));
+            return ps;
+        }, rs -> { sink.accept(new StateRow(rs.getLong(1), rs.getInt(2), rs.getString(3))); });
+    }
+
+    /** Append transitions and bring service_state in line with them. */
+    public void apply(List<Change> changes) {
+        if (changes.isEmpty()) return;
+        jdbc.batchUpdate("insert into service_transition (asset_id, service_id, state, ts) values (?, ?, ?, ?)",
+                changes, changes.size(), (ps, c) -> {
+                    ps.setLong(1, c.assetId());
+                    ps.setInt(2, c.serviceId());
+                    ps.setString(3, c.state());
+                    ps.setObject(4, utc(c.ts()));
+                });
+        var upserts = changes.stream().filter(c -> c.state() != null).toList();
+        if (!upserts.isEmpty()) {
+            jdbc.batchUpdate("""
+                    insert into service_state (asset_id, service_id, state, since) values (?, ?, ?, ?)
+                    on conflict (asset_id, service_id) do update set state = excluded.state, since = excluded.since""",
+                    upserts, upserts.size(), (ps, c) -> {
+                        ps.setLong(1, c.assetId());
+                        ps.setInt(2, c.serviceId());
+                        ps.setString(3, c.state());
+                        ps.setObject(4, utc(c.ts()));
+                    });
+        }
+        var removals = changes.stream().filter(c -> c.state() == null).toList();
+        if (!removals.isEmpty()) {
+            jdbc.batchUpdate("delete from service_state where asset_id = ? and service_id = ?",
+                    removals, removals.size(), (ps, c) -> {
+                        ps.setLong(1, c.assetId());
+                        ps.setInt(2, c.serviceId());
+                    });
+        }
+    }
+
+    /** Transitions of one asset in [from, to], oldest first, optionally for one service. */
+    public List<TransitionRow> history(long assetId, Instant from, Instant to, String service, int limit) {
+        var sql = """
+                select c.name, t.state, t.ts from service_transition t
+                join service_catalog c on c.id = t.service_id
+                where t.asset_id = ? and t.ts between ? and ?""";
+        var args = new java.util.ArrayList<Object>(List.of(assetId, utc(from), utc(to)));
+        if (service != null && !service.isBlank()) {
+            sql += " and c.name = ?";
+            args.add(service);
+        }
+        sql += " order by t.ts asc limit ?";
+        args.add(limit);
+        return jdbc.query(sql, (rs, i) -> new TransitionRow(rs.getString(1), rs.getString(2),
+                rs.getObject(3, OffsetDateTime.class).toInstant()), args.toArray());
+    }
+
+    private static OffsetDateTime utc(Instant ts) { return OffsetDateTime.ofInstant(ts, ZoneOffset.UTC); }
+}
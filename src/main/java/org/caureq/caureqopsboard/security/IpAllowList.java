@@ -0,0 +1,55 @@
+package org.caureq.caureqopsboard.security;
+
+import java.net.InetAddress;
+import java.util.List;
+
+/**
+ * Comma-separated IP allowlist: "*", exact IPs (127.0.0.1) or IPv4 CIDRs (192.168.1.0/24).
+ * Loopback IPv6 is normalised to 127.0.0.1.
+ */
+public final class IpAllowList {
+    private final List<String> rules;
+
+    private IpAllowList(List<String> rules) { this.rules = rules; }
+
+    public static IpAllowList parse(String raw) {
+        return new IpAllowList(List.of((raw == null ? "" : raw.trim()).split("\\s*,\\s*")));
+    }
+
+    public boolean allows(String ip) {
+        if (ip == null) return false;
+        if ("0:0:0:0:0:0:0:1".equals(ip) || "::1".equals(ip)) ip = "127.0.0.1";
+        for (var rule : rules) {
+            if (rule.equals("*")) return true;
+            if (!rule.contains("/")) {
+                if (rule.equals(ip)) return true;           // IP exacte (ex: 127.0.0.1)
+            } else {
+                if (matchesCidr(ip, rule)) return true;     // IPv4 CIDR (ex: 192.168.1.0/24)
+            }
+        }
+        return false;
+    }
+
+    // IPv4 uniquement (suffisant pour notre cas)
+    private static boolean matchesCidr(String ip, String cidr) {
+        try {
+            String[] parts = cidr.split("/");
+            String base = parts[0];
+            int prefix = Integer.parseInt(parts[1]);
+            byte[] addr = InetAddress.getByName(ip).getAddress();
+            byte[] net  = InetAddress.getByName(base).getAddress();
+            if (addr.length != 4 || net.length != 4) return false; // on ne gère qu’IPv4 ici
+
+            int mask = prefix == 0 ? 0 : 0xffffffff << (32 - prefix);
+            int a = byteArrayToInt(addr);
+            int n = byteArrayToInt(net);
+            return (a & mask) == (n & mask);
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private static int byteArrayToInt(byte[] b) {
+        return ((b[0] & 0xff) << 24) | ((b[1] & 0xff) << 16) | ((b[2] & 0xff) << 8) | (b[3] & 0xff);
+    }
+}
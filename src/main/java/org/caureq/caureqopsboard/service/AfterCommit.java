@@ -0,0 +1,23 @@
+package org.caureq.caureqopsboard.service;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Defers in-memory side effects (caches, indexes, snapshots) until the surrounding transaction
+ * commits, so a rollback never leaves them ahead of the database. Without an active transaction
+ * synchronization the action runs immediately.
+ */
+public final class AfterCommit {
+    private AfterCommit() {}
+
+    public static void run(Runnable r) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            r.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override public void afterCommit() { r.run(); }
+        });
+    }
+}
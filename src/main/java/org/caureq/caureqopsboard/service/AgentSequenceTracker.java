@@ -0,0 +1,142 @@
+package org.caureq.caureqopsboard.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.caureq.caureqopsboard.api.dto.IngestDTO;
+import org.caureq.caureqopsboard.repo.AgentSequenceRepo;
+import org.caureq.caureqopsboard.repo.AgentSequenceRepo.Mark;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Duplicate / replay filter for agents that send (agentId, seq) with their samples.
+ *
+ * Responsibilities
+ * - Keep per agent the highest accepted seq and a 64-bit window of the seqs just below it
+ *   (same scheme as an IPsec anti-replay window), entirely in memory.
+ * - Drop a sample when its seq was already accepted or is older than the window.
+ * - Persist marks lazily (agent_sequence) every app.ingest.agent-seq-flush-ms and on shutdown;
+ *   a mark is read from the DB only the first time an agent is seen.
+ *
+ * Samples without agentId/seq are always accepted (older agents).
+ * Seqs admitted by a transaction that rolls back are released so the retry is not dropped.
+ */
+@Slf4j
+@Component
+public class AgentSequenceTracker {
+    static final int WINDOW = 64;
+
+    private final AgentSequenceRepo repo;
+    private final Map<String, Window> windows = new ConcurrentHashMap<>();
+    private final Set<String> dirty = ConcurrentHashMap.newKeySet();
+    private final Counter duplicates;
+
+    public AgentSequenceTracker(AgentSequenceRepo repo, MeterRegistry registry) {
+        this.repo = repo;
+        this.duplicates = Counter.builder("ingest.duplicates").register(registry);
+    }
+
+    private static final class Window {
+        long high = -1;
+        long mask; // bit i = high - i seen
+
+        synchronized boolean admit(long seq) {
+            if (seq > high) {
+                long shift = seq - high;
+                mask = shift >= WINDOW ? 0 : mask << shift;
+                mask |= 1L;
+                high = seq;
+                return true;
+            }
+            long off = high - seq;
+            if (off >= WINDOW) return false;
+            long bit = 1L << off;
+            if ((mask & bit) != 0) return false;
+            mask |= bit;
+            return true;
+        }
+
+        synchronized void release(long seq) {
+            long off = high - seq;
+            if (off >= 0 && off < WINDOW) mask &= ~(1L << off);
+        }
+
+        synchronized Mark mark(String agentId) { return new Mark(agentId, high, mask); }
+    }
+
+    /** @return the samples of the batch that are not duplicates or stale replays (order kept) */
+    public List<IngestDTO> admit(List<IngestDTO> batch) {
+        List<IngestDTO> out = null;
+        List<IngestDTO> admitted = null;
+        for (int i = 0; i < batch.size(); i++) {
+            var d = batch.get(i);
+            boolean ok = d.agentId() == null || d.seq() == null || window(d.agentId()).admit(d.seq());
+            if (ok && d.agentId() != null && d.seq() != null) {
+                dirty.add(d.agentId());
+                if (admitted == null) admitted = new ArrayList<>();
+                admitted.add(d);
+            }
+            if (!ok) {
+                duplicates.increment();
+                if (out == null) out = new ArrayList<>(batch.subList(0, i));
+            } else if (out != null) {
+                out.add(d);
+            }
+        }
+        if (admitted != null) releaseOnRollback(admitted);
+        return out == null ? batch : out;
+    }
+
+    private Window window(String agentId) {
+        var w = windows.get(agentId);
+        if (w != null) return w;
+        return windows.computeIfAbsent(agentId, id -> {
+            var nw = new Window();
+            repo.find(id).ifPresent(m -> { nw.high = m.highSeq(); nw.mask = m.seenMask(); });
+            return nw;
+        });
+    }
+
+    private void releaseOnRollback(List<IngestDTO> admitted) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) return;
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) return;
+                admitted.forEach(d -> window(d.agentId()).release(d.seq()));
+            }
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${app.ingest.agent-seq-flush-ms:10000}")
+    public void flush() {
+        if (dirty.isEmpty()) return;
+        List<Mark> marks = new ArrayList<>(dirty.size());
+        for (var id : dirty) {
+            dirty.remove(id);
+            var w = windows.get(id);
+            if (w != null) marks.add(w.mark(id));
+        }
+        try {
+            repo.saveAll(marks);
+            log.debug("persisted {} agent sequence marks", marks.size());
+        } catch (Exception e) {
+            marks.forEach(m -> dirty.add(m.agentId()));
+            log.warn("agent sequence flush failed ({} agents): {}", marks.size(), e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    void flushOnShutdown() {
+        flush();
+    }
+}
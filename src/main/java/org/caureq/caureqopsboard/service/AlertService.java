@@ -11,6 +11,7 @@ import org.springframework.stereotype.Service;
 
 import java.time.Duration;
 import java.time.Instant;
+import java.util.function.Supplier;
 
 @Slf4j
 @Service
@@ -22,38 +23,46 @@ public class AlertService {
     private final DiagnosticService diag;
 
     public void evaluateOnIngest(Asset asset, Metric metric) {
-        var status = computeStatus(asset.getLastSeen(),
+        evaluateOnIngest(asset.getHostname(), metric, () -> asset);
+    }
+
+    /**
+     * Variant for the ingest hot path: the asset is only loaded (via the supplier)
+     * when an alert actually needs it for top-process capture.
+     */
+    public void evaluateOnIngest(String hostname, Metric metric, Supplier<Asset> assetLoader) {
+        var status = computeStatus(metric.getTs(),
                 props.status().upMinutes(), props.status().staleMinutes());
         if ("DOWN".equals(status)) {
-            log.warn("ALERT DOWN: {}", asset.getHostname());
+            log.warn("ALERT DOWN: {}", hostname);
         } else if ("STALE".equals(status)) {
-            log.warn("ALERT STALE: {}", asset.getHostname());
+            log.warn("ALERT STALE: {}", hostname);
         }
         double cpuTh = cfg.getCpuHighPct();
         double ramTh = cfg.getRamHighPct();
         double dskTh = cfg.getDiskHighPct();
         if (metric.getCpu() > cpuTh) {
-            var extra = safeTop(asset);
+            var extra = safeTop(assetLoader);
             var msg = "CPU high: %.1f%% > %.1f%%%s".formatted(metric.getCpu(), cpuTh, extra);
-            registry.add(new AlertRegistry.Alert(java.util.UUID.randomUUID().toString(), asset.getHostname(), "CPU_HIGH", msg, java.time.Instant.now(), false));
-            log.warn("ALERT HIGH CPU: {} cpu={}{}", asset.getHostname(), metric.getCpu(), extra);
+            registry.add(new AlertRegistry.Alert(java.util.UUID.randomUUID().toString(), hostname, "CPU_HIGH", msg, java.time.Instant.now(), false));
+            log.warn("ALERT HIGH CPU: {} cpu={}{}", hostname, metric.getCpu(), extra);
         }
         if (metric.getRam() > ramTh) {
-            var extra = safeTop(asset);
+            var extra = safeTop(assetLoader);
             var msg = "RAM high: %.1f%% > %.1f%%%s".formatted(metric.getRam(), ramTh, extra);
-            registry.add(new AlertRegistry.Alert(java.util.UUID.randomUUID().toString(), asset.getHostname(), "RAM_HIGH", msg, java.time.Instant.now(), false));
-            log.warn("ALERT HIGH RAM: {} ram={}{}", asset.getHostname(), metric.getRam(), extra);
+            registry.add(new AlertRegistry.Alert(java.util.UUID.randomUUID().toString(), hostname, "RAM_HIGH", msg, java.time.Instant.now(), false));
+            log.warn("ALERT HIGH RAM: {} ram={}{}", hostname, metric.getRam(), extra);
         }
         if (metric.getDisk() > dskTh) {
             var msg = "Disk high: %.1f%% > %.1f%%".formatted(metric.getDisk(), dskTh);
-            registry.add(new AlertRegistry.Alert(java.util.UUID.randomUUID().toString(), asset.getHostname(), "DISK_HIGH", msg, java.time.Instant.now(), false));
-            log.warn("ALERT HIGH DISK: {} disk={}%", asset.getHostname(), metric.getDisk());
+            registry.add(new AlertRegistry.Alert(java.util.UUID.randomUUID().toString(), hostname, "DISK_HIGH", msg, java.time.Instant.now(), false));
+            log.warn("ALERT HIGH DISK: {} disk={}%", hostname, metric.getDisk());
         }
     }
 
-    private String safeTop(Asset asset) {
+    private String safeTop(Supplier<Asset> assetLoader) {
         try {
-            String s = diag.captureTopProcess(asset);
+            String s = diag.captureTopProcess(assetLoader.get());
             if (s != null && !s.isBlank()) {
                 if (s.length() > 120) s = s.substring(0, 120);
                 return " [top=" + s + "]";
@@ -13,6 +13,9 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class AssetCommandService {
     private final AssetRepo assetRepo;
+    private final AssetIdCache assetIds;
+    private final AssetTagIndex tagIndex;
+    private final FleetSnapshot fleet;
 
     @Transactional
     public void updateOwnerAndTags(String hostname, UpdateAssetDTO d){
@@ -33,5 +36,8 @@ public class AssetCommandService {
         }
 
         assetRepo.save(asset); // idempotent: mêmes valeurs => même état
+        if (d.tags() != null) tagIndex.sync(asset);
+        assetIds.invalidate(asset.getHostname());
+        fleet.reload(asset.getId());
     }
 }
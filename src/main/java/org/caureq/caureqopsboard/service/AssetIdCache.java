@@ -0,0 +1,88 @@
+package org.caureq.caureqopsboard.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.caureq.caureqopsboard.domain.Asset;
+import org.caureq.caureqopsboard.repo.AssetRepo;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Bounded hostname -> asset id cache for the ingest hot path.
+ *
+ * Keys are trimmed and lower-cased (same semantics as findByHostnameIgnoreCase).
+ * Least recently used entries are evicted past app.ingest.asset-cache-size.
+ * Writers that create or modify assets call invalidate() so the next lookup reloads.
+ * resolve()/requireId() read through to the DB on a miss (read paths keyed by hostname).
+ */
+@Component
+public class AssetIdCache {
+    private final AssetRepo assetRepo;
+    private final int maxSize;
+    private final Map<String, Long> lru;
+    private final Counter hits;
+    private final Counter misses;
+
+    public AssetIdCache(AssetRepo assetRepo, MeterRegistry registry,
+                        @Value("${app.ingest.asset-cache-size:10000}") int maxSize) {
+        this.assetRepo = assetRepo;
+        this.maxSize = Math.max(16, maxSize);
+        this.lru = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                return size() > AssetIdCache.this.maxSize;
+            }
+        };
+        Gauge.builder("ingest.asset-cache.size", this, AssetIdCache::size).register(registry);
+        this.hits = Counter.builder("ingest.asset-cache.hits").register(registry);
+        this.misses = Counter.builder("ingest.asset-cache.misses").register(registry);
+    }
+
+    public static String key(String hostname) {
+        return hostname == null ? "" : hostname.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /** Cached asset id, or null when unknown. */
+    public Long get(String hostname) {
+        Long id;
+        synchronized (lru) { id = lru.get(key(hostname)); }
+        if (id == null) misses.increment(); else hits.increment();
+        return id;
+    }
+
+    /** Cached id, or a DB lookup (cached on success) when absent. */
+    public Optional<Long> resolve(String hostname) {
+        var id = get(hostname);
+        if (id != null) return Optional.of(id);
+        var found = assetRepo.findByHostnameIgnoreCase(hostname.trim());
+        found.ifPresent(a -> put(a.getHostname(), a.getId()));
+        return found.map(Asset::getId);
+    }
+
+    public long requireId(String hostname) {
+        return resolve(hostname).orElseThrow(() -> new IllegalArgumentException("asset not found: " + hostname));
+    }
+
+    public void put(String hostname, Long id) {
+        if (id == null) return;
+        synchronized (lru) { lru.put(key(hostname), id); }
+    }
+
+    public void invalidate(String hostname) {
+        synchronized (lru) { lru.remove(key(hostname)); }
+    }
+
+    public void clear() {
+        synchronized (lru) { lru.clear(); }
+    }
+
+    public int size() {
+        synchronized (lru) { return lru.size(); }
+    }
+}
@@ -6,8 +6,9 @@ import org.caureq.caureqopsboard.api.dto.AssetDetailDTO;
 import org.caureq.caureqopsboard.api.dto.AssetListItemDTO;
 import com.fasterxml.jackson.databind.JsonNode;
 import org.caureq.caureqopsboard.config.AppProps;
+import org.caureq.caureqopsboard.repo.AssetListRepo;
 import org.caureq.caureqopsboard.repo.AssetRepo;
-import org.caureq.caureqopsboard.repo.MetricRepo;
+import org.caureq.caureqopsboard.repo.AssetTagRepo;
 import org.springframework.stereotype.Service;
 
 import java.time.Duration;
@@ -20,9 +21,9 @@ import java.util.regex.Pattern;
  * Read side for Assets.
  *
  * Responsibilities
- * - Query assets from the DB with optional search/pagination.
+ * - Query assets from the DB with optional search, tag filters and pagination.
  * - Compute coarse status (UP/STALE/DOWN) from lastSeen windows only.
- * - Batch-load latest metrics for the current page to avoid N+1 queries.
+ * - Join latest metrics from asset_latest_metric in the same query (independent of history size).
  *
  * Patterns
  * - Repository pattern via Spring Data JPA.
@@ -32,58 +33,140 @@ import java.util.regex.Pattern;
 @RequiredArgsConstructor
 public class AssetQueryService {
     private final AssetRepo assetRepo;
-    private final MetricRepo metricRepo;
+    private final AssetListRepo listRepo;
     private final AppProps props;
     private final ProxmoxClient proxmox;
 
+    /** Tag match mode for list filters. */
+    public enum TagMatch {
+        ANY, ALL;
+
+        public static TagMatch parse(String s) {
+            if (s == null || s.isBlank()) return ANY;
+            try { return valueOf(s.trim().toUpperCase(java.util.Locale.ROOT)); }
+            catch (IllegalArgumentException e) { throw new IllegalArgumentException("tagMatch must be any or all"); }
+        }
+    }
+
+    /** Asset list request; null or empty fields mean no filter / the default. */
+    public record ListQuery(String q, Integer limit, Integer offset, boolean includeRetired,
+                            List<String> tags, TagMatch tagMatch, List<String> excludeTags,
+                            List<String> status, String sort, String order, String cursor) {}
+
+    /**
+     * One page plus the number of assets matching the filters across all pages.
+     * @param nextCursor keyset cursor for the following page, null on the last page
+     */
+    public record ListResult(List<AssetListItemDTO> items, long total, String nextCursor) {}
+
     /**
-     * Page through assets (DB-backed) and attach latest metrics when available.
+     * Page through assets (DB-backed) with their latest metrics (asset_latest_metric join).
+     * Hostname, tag, retired and status filters and the sort run in SQL before pagination,
+     * so pages are full. A cursor (from a previous page) continues by keyset instead of offset.
      * No Proxmox calls here: live VM state is handled elsewhere.
      */
-    public List<AssetListItemDTO> list(String q, Integer limit, Integer offset, boolean includeRetired){
-        int size = (limit==null || limit<=0 || limit>1000) ? 200 : limit;
-        int off = (offset==null || offset<0) ? 0 : offset;
-        int page = off / size;
-        var pageable = org.springframework.data.domain.PageRequest.of(page, size,
-                org.springframework.data.domain.Sort.by("hostname").ascending());
-
-        var pageRes = (q==null || q.isBlank())
-                ? assetRepo.findAll(pageable)
-                : assetRepo.findByHostnameContainingIgnoreCase(q, pageable);
-
-        var assets = pageRes.getContent();
-        if (!includeRetired) {
-            assets = assets.stream().filter(a -> {
-                var tags = a.getTags();
-                if (tags == null || tags.isBlank()) return true;
-                // naive CSV check, case-insensitive exact token match
-                for (var t : tags.split(",")) if ("retired".equalsIgnoreCase(t.trim())) return false;
-                return true;
-            }).toList();
-        }
-        // Batch load latest metrics for visible page to avoid N queries
-        var latestById = new java.util.HashMap<Long, org.caureq.caureqopsboard.domain.Metric>();
-        try {
-            var latest = metricRepo.findLatestForAssets(assets);
-            for (var m : latest) {
-                if (m.getAsset()!=null && m.getAsset().getId()!=null) latestById.put(m.getAsset().getId(), m);
+    public ListResult list(ListQuery lq){
+        int size = (lq.limit()==null || lq.limit()<=0 || lq.limit()>1000) ? 200 : lq.limit();
+        int off = (lq.offset()==null || lq.offset()<0) ? 0 : lq.offset();
+        var filter = filter(lq, Instant.now());
+        var sort = parseSort(lq.sort());
+        boolean desc = lq.order() == null || lq.order().isBlank()
+                ? sort != AssetListRepo.SortKey.HOSTNAME
+                : parseDesc(lq.order());
+        AssetListRepo.After after = null;
+        if (lq.cursor() != null && !lq.cursor().isBlank()) {
+            var c = PageCursor.decode(lq.cursor(), "assets", 4);
+            if (!c[0].equals(sort.name()) || Boolean.parseBoolean(c[1]) != desc) {
+                throw new IllegalArgumentException("cursor does not match sort/order");
             }
-        } catch (Exception ignored) {}
+            after = new AssetListRepo.After(c[2].isEmpty() ? null : c[2], c[3]);
+            off = 0; // keyset replaces the offset
+        }
 
-        return assets.stream().map(a -> {
-            var last = latestById.get(a.getId());
-            var lastSeenLocal = (a.getLastSeen() == null) ? null
-                    : a.getLastSeen().atZone(ZoneId.systemDefault()).toOffsetDateTime();
-            var status = computeStatus(a.getLastSeen(), props.status().upMinutes(), props.status().staleMinutes());
+        var rows = listRepo.page(filter, sort, desc, after, size, off);
+        // a short first page already is the total; otherwise count separately
+        long total = (after == null && off == 0 && rows.size() < size) ? rows.size() : listRepo.count(filter);
+        String next = null;
+        if (rows.size() == size) {
+            var last = rows.get(rows.size() - 1);
+            next = PageCursor.encode("assets", sort.name(), Boolean.toString(desc), last.keyOf(sort), last.hostname());
+        }
+        var items = rows.stream().map(r -> {
+            var lastSeenLocal = (r.lastSeen() == null) ? null
+                    : r.lastSeen().atZone(ZoneId.systemDefault()).toOffsetDateTime();
+            var status = computeStatus(r.lastSeen(), props.status().upMinutes(), props.status().staleMinutes());
             return new AssetListItemDTO(
-                    a.getHostname(), a.getIp(), a.getOs(),
+                    r.hostname(), r.ip(), r.os(),
                     status, lastSeenLocal,
-                    last!=null? last.getCpu():null,
-                    last!=null? last.getRam():null,
-                    last!=null? last.getDisk():null
+                    r.cpu(), r.ram(), r.disk()
             );
         }).toList();
+        return new ListResult(items, total, next);
     }
+
+    private AssetListRepo.Filter filter(ListQuery lq, Instant now) {
+        var include = normalizeTags(lq.tags());
+        var exclude = normalizeTags(lq.excludeTags());
+        if (!lq.includeRetired() && !include.contains("retired")) exclude.add("retired");
+        return new AssetListRepo.Filter(lq.q(), include, lq.tagMatch() == TagMatch.ALL, exclude,
+                seenRanges(lq.status(), now));
+    }
+
+    /**
+     * Status filters as last_seen ranges, matching computeStatus (whole minutes, truncated):
+     * UP = seen within upMinutes+1, STALE = up to staleMinutes+1, DOWN = older or never seen.
+     */
+    private List<AssetListRepo.SeenRange> seenRanges(List<String> status, Instant now) {
+        var up = now.minus(Duration.ofMinutes(props.status().upMinutes() + 1L));
+        var stale = now.minus(Duration.ofMinutes(props.status().staleMinutes() + 1L));
+        java.util.Set<String> wanted = new java.util.LinkedHashSet<>();
+        if (status != null) for (var s : status) wanted.addAll(AssetTagRepo.parse(s));
+        List<AssetListRepo.SeenRange> out = new java.util.ArrayList<>();
+        for (var s : wanted) {
+            switch (s) {
+                case "up" -> out.add(new AssetListRepo.SeenRange(up, null, false));
+                case "stale" -> out.add(new AssetListRepo.SeenRange(stale, up, false));
+                case "down" -> out.add(new AssetListRepo.SeenRange(null, stale, true));
+                default -> throw new IllegalArgumentException("status must be UP, STALE or DOWN: " + s);
+            }
+        }
+        return out;
+    }
+
+    private static AssetListRepo.SortKey parseSort(String s) {
+        if (s == null || s.isBlank()) return AssetListRepo.SortKey.HOSTNAME;
+        return switch (s.trim().toLowerCase(java.util.Locale.ROOT)) {
+            case "hostname" -> AssetListRepo.SortKey.HOSTNAME;
+            case "cpu" -> AssetListRepo.SortKey.CPU;
+            case "ram" -> AssetListRepo.SortKey.RAM;
+            case "disk" -> AssetListRepo.SortKey.DISK;
+            case "lastseen" -> AssetListRepo.SortKey.LAST_SEEN;
+            default -> throw new IllegalArgumentException("sort must be hostname, cpu, ram, disk or lastSeen");
+        };
+    }
+
+    private static boolean parseDesc(String order) {
+        return switch (order.trim().toLowerCase(java.util.Locale.ROOT)) {
+            case "asc" -> false;
+            case "desc" -> true;
+            default -> throw new IllegalArgumentException("order must be asc or desc");
+        };
+    }
+
+    /** Typeahead: up to limit (default 10, max 50) hostnames containing q, prefix matches first. */
+    public List<String> suggest(String q, Integer limit) {
+        if (q == null || q.isBlank()) return List.of();
+        int size = (limit == null || limit <= 0) ? 10 : Math.min(limit, 50);
+        return listRepo.suggest(q, size);
+    }
+
+    /** Lower-cased, de-duplicated tags; CSV values inside the list are split. */
+    private static java.util.Set<String> normalizeTags(List<String> tags) {
+        java.util.Set<String> out = new java.util.LinkedHashSet<>();
+        if (tags != null) for (var t : tags) out.addAll(AssetTagRepo.parse(t));
+        return out;
+    }
+
     /**
      * Get a single asset details from DB (owner, tags, lastSeen...).
      * Live VM state is expected to be fetched via LiveStatusService by the UI.
@@ -0,0 +1,87 @@
+package org.caureq.caureqopsboard.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.caureq.caureqopsboard.domain.Asset;
+import org.caureq.caureqopsboard.repo.AssetTagRepo;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tag -> asset ids inverted index over asset_tag, for bulk targeting by tag.
+ *
+ * Responsibilities
+ * - Writers of assets.tags call sync() in their transaction: asset_tag is rewritten for
+ *   that asset and the in-memory index follows once the transaction commits.
+ * - Load everything at startup and reload every app.assets.tag-index-reload-ms, so changes
+ *   made by other instances are picked up.
+ */
+@Slf4j
+@Component
+public class AssetTagIndex {
+    private final AssetTagRepo repo;
+    private volatile Map<String, Set<Long>> byTag = new ConcurrentHashMap<>();
+    private final Map<Long, Set<String>> byAsset = new ConcurrentHashMap<>();
+
+    public AssetTagIndex(AssetTagRepo repo, MeterRegistry registry) {
+        this.repo = repo;
+        Gauge.builder("assets.tag-index.tags", this, i -> i.byTag.size()).register(registry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${app.assets.tag-index-reload-ms:300000}",
+            initialDelayString = "${app.assets.tag-index-reload-ms:300000}")
+    public void reload() {
+        try {
+            Map<String, Set<Long>> tags = new ConcurrentHashMap<>();
+            Map<Long, Set<String>> assets = new HashMap<>();
+            repo.all((tag, id) -> {
+                tags.computeIfAbsent(tag, k -> ConcurrentHashMap.newKeySet()).add(id);
+                assets.computeIfAbsent(id, k -> new HashSet<>()).add(tag);
+            });
+            synchronized (this) {
+                byTag = tags;
+                byAsset.clear();
+                byAsset.putAll(assets);
+            }
+            log.debug("tag index loaded: {} tags, {} assets", tags.size(), assets.size());
+        } catch (Exception e) {
+            log.warn("[Assets] loading tag index failed: {}", e.getMessage());
+        }
+    }
+
+    /** Ids of assets carrying the tag (case-insensitive). */
+    public Set<Long> assetIds(String tag) {
+        if (tag == null) return Set.of();
+        var ids = byTag.get(tag.trim().toLowerCase(java.util.Locale.ROOT));
+        return ids == null ? Set.of() : Set.copyOf(ids);
+    }
+
+    /** Rewrite asset_tag from asset.getTags(); the index is updated after commit. */
+    public void sync(Asset asset) {
+        var tags = AssetTagRepo.parse(asset.getTags());
+        repo.replace(asset.getId(), tags);
+        long id = asset.getId();
+        AfterCommit.run(() -> apply(id, tags));
+    }
+
+    private synchronized void apply(long assetId, Set<String> tags) {
+        var old = byAsset.put(assetId, Set.copyOf(tags));
+        if (old != null) {
+            for (var t : old) {
+                var ids = byTag.get(t);
+                if (ids != null) ids.remove(assetId);
+            }
+        }
+        for (var t : tags) byTag.computeIfAbsent(t, k -> ConcurrentHashMap.newKeySet()).add(assetId);
+    }
+}
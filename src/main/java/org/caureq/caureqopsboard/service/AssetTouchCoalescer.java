@@ -0,0 +1,80 @@
+package org.caureq.caureqopsboard.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.caureq.caureqopsboard.repo.AssetTouchRepo;
+import org.caureq.caureqopsboard.repo.AssetTouchRepo.Touch;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Write-behind buffer for asset presence (lastSeen/ip/os).
+ *
+ * Responsibilities
+ * - Keep only the latest touch per asset in memory (ingest samples, live status refresh).
+ * - Flush everything pending every app.ingest.touch-flush-ms as one set-based UPDATE.
+ * - Flush on shutdown so the last known presence is not lost.
+ *
+ * Trade-off: assets.last_seen lags by at most one flush interval.
+ */
+@Slf4j
+@Component
+public class AssetTouchCoalescer {
+    private final AssetTouchRepo repo;
+    private final Map<Long, Touch> pending = new ConcurrentHashMap<>();
+    private final Counter flushedRows;
+
+    public AssetTouchCoalescer(AssetTouchRepo repo, MeterRegistry registry) {
+        this.repo = repo;
+        Gauge.builder("ingest.asset-touch.pending", pending, Map::size).register(registry);
+        this.flushedRows = Counter.builder("ingest.asset-touch.flushed").register(registry);
+    }
+
+    /** Merge a touch: newest lastSeen wins, null ip/os keep the previously buffered value. */
+    public void record(Touch t) {
+        pending.merge(t.assetId(), t, AssetTouchCoalescer::merge);
+    }
+
+    private static Touch merge(Touch old, Touch t) {
+        boolean newer = old.lastSeen() == null
+                || (t.lastSeen() != null && !t.lastSeen().isBefore(old.lastSeen()));
+        var a = newer ? t : old;   // preferred values
+        var b = newer ? old : t;   // fallback when preferred is null
+        return new Touch(t.assetId(),
+                a.ip() != null ? a.ip() : b.ip(),
+                a.os() != null ? a.os() : b.os(),
+                a.lastSeen() != null ? a.lastSeen() : b.lastSeen());
+    }
+
+    @Scheduled(fixedDelayString = "${app.ingest.touch-flush-ms:5000}")
+    public void flush() {
+        if (pending.isEmpty()) return;
+        List<Touch> batch = new ArrayList<>(pending.size());
+        for (var id : pending.keySet()) {
+            var t = pending.remove(id);
+            if (t != null) batch.add(t);
+        }
+        try {
+            int n = repo.touchAll(batch);
+            flushedRows.increment(n);
+            log.debug("flushed {} asset touches ({} rows)", batch.size(), n);
+        } catch (Exception e) {
+            // put back what is not superseded yet; next run retries
+            batch.forEach(this::record);
+            log.warn("asset touch flush failed ({} pending): {}", batch.size(), e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    void flushOnShutdown() {
+        flush();
+    }
+}
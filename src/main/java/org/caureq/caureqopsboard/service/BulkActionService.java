@@ -14,6 +14,7 @@ public class BulkActionService {
     private final ProxmoxClient proxmox;
     private final AssetRepo assetRepo;
     private final AuditService audit;
+    private final AssetTagIndex tagIndex;
 
     public record Request(List<String> hostnames, String tag) {}
     public record Result(String hostname, String node, Integer vmid, String outcome, String upidOrError) {}
@@ -51,14 +52,14 @@ public class BulkActionService {
         if (req.hostnames() != null) {
             req.hostnames().forEach(h -> { if (h != null && !h.isBlank()) names.add(h.trim()); });
         }
-        List<Asset> all = assetRepo.findAll();
         List<Asset> list = new ArrayList<>();
         if (req.tag() != null && !req.tag().isBlank()) {
-            var tag = req.tag().trim().toLowerCase(Locale.ROOT);
-            for (var a : all) {
-                if (a.getTags() == null) continue;
-                var tags = Arrays.stream(a.getTags().split(",")).map(s -> s.trim().toLowerCase(Locale.ROOT)).toList();
-                if (tags.contains(tag)) list.add(a);
+            // inverted index: only the tagged assets are loaded, never the whole inventory
+            var ids = tagIndex.assetIds(req.tag());
+            if (!ids.isEmpty()) {
+                var tagged = new ArrayList<>(assetRepo.findAllById(ids));
+                tagged.sort(Comparator.comparing(Asset::getHostname, String.CASE_INSENSITIVE_ORDER));
+                list.addAll(tagged);
             }
         }
         if (!names.isEmpty()) {
@@ -0,0 +1,195 @@
+package org.caureq.caureqopsboard.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.caureq.caureqopsboard.api.dto.FleetAssetDTO;
+import org.caureq.caureqopsboard.api.dto.FleetSnapshotDTO;
+import org.caureq.caureqopsboard.config.AppProps;
+import org.caureq.caureqopsboard.repo.AssetListRepo;
+import org.caureq.caureqopsboard.repo.AssetTagRepo;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Read model of the whole fleet (assets, newest sample, live VM state) served from memory,
+ * so dashboards and wallboards polling it never reach the database.
+ *
+ * Responsibilities
+ * - Copy-on-write: readers get an immutable Snapshot through one volatile read; a single
+ *   publisher builds the next one every app.dashboard.publish-ms when something changed.
+ * - Incremental: ingest hands committed samples to record(), asset writers call reload(id)
+ *   (that asset is re-read from the DB), and live state is picked up when
+ *   LiveStatusService.version() moves. Changes between two publishes are coalesced per asset.
+ * - Status (UP/STALE/DOWN) is derived at publish time and re-derived every
+ *   app.dashboard.status-recheck-ms so ageing assets change state without any write.
+ * - The version only increases when the published content changed; with the per-boot id it
+ *   forms the ETag of /api/dashboard. A full reload every app.dashboard.resync-ms picks up
+ *   writes made by other instances and anything not routed through the hooks.
+ */
+@Slf4j
+@Component
+public class FleetSnapshot {
+    private final AssetListRepo repo;
+    private final LiveStatusService live;
+    private final AppProps props;
+    private final Duration statusRecheck;
+    private final String bootId = Long.toHexString(new Random().nextLong());
+
+    public record Snapshot(long version, Instant builtAt, List<FleetAssetDTO> assets) {
+        public FleetSnapshotDTO toDto() {
+            return new FleetSnapshotDTO(version, local(builtAt), assets);
+        }
+    }
+
+    /** A committed ingest sample; ip/os null keep the stored values. */
+    public record Sample(long assetId, String hostname, String ip, String os, Instant seen,
+                         Instant ts, double cpu, double ram, double disk) {}
+
+    private volatile Snapshot current = new Snapshot(0, Instant.EPOCH, List.of());
+    private volatile boolean fullReload = true;
+    private final Map<Long, Sample> pendingSamples = new ConcurrentHashMap<>();
+    private final Set<Long> pendingReloads = ConcurrentHashMap.newKeySet();
+    // publisher state, guarded by this
+    private Map<Long, AssetListRepo.FleetRow> rows = Map.of();
+    private long liveVersion = -1;
+
+    public FleetSnapshot(AssetListRepo repo, LiveStatusService live, AppProps props, MeterRegistry registry,
+                         @Value("${app.dashboard.status-recheck-ms:15000}") long statusRecheckMs) {
+        this.repo = repo;
+        this.live = live;
+        this.props = props;
+        this.statusRecheck = Duration.ofMillis(Math.max(1000, statusRecheckMs));
+        Gauge.builder("dashboard.snapshot.version", this, s -> s.current.version()).register(registry);
+        Gauge.builder("dashboard.snapshot.assets", this, s -> s.current.assets().size()).register(registry);
+    }
+
+    public Snapshot current() { return current; }
+
+    /** Strong ETag (quoted) of a snapshot; the boot id keeps versions of other instances apart. */
+    public String etag(Snapshot s) {
+        return "\"fleet-" + bootId + "-" + s.version() + '"';
+    }
+
+    /** Newest samples of a committed ingest batch (call after commit). */
+    public void record(Collection<Sample> samples) {
+        for (var s : samples) pendingSamples.merge(s.assetId(), s, FleetSnapshot::newer);
+    }
+
+    /** An asset row changed (owner, tags, mapping, history): re-read it once the transaction commits. */
+    public void reload(long assetId) {
+        AfterCommit.run(() -> pendingReloads.add(assetId));
+    }
+
+    @Scheduled(fixedDelayString = "${app.dashboard.resync-ms:300000}",
+            initialDelayString = "${app.dashboard.resync-ms:300000}")
+    public void resync() {
+        fullReload = true;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${app.dashboard.publish-ms:1000}",
+            initialDelayString = "${app.dashboard.publish-ms:1000}")
+    public synchronized void publish() {
+        var now = Instant.now();
+        Map<Long, AssetListRepo.FleetRow> next = null;
+        Set<Long> ids = Set.of();
+        boolean full = fullReload;
+        try {
+            if (full) {
+                fullReload = false;
+                pendingReloads.clear();
+                next = new HashMap<>();
+                for (var r : repo.fleet(null)) next.put(r.id(), r);
+            }
+            ids = drain(pendingReloads);
+            if (!ids.isEmpty()) {
+                if (next == null) next = new HashMap<>(rows);
+                next.keySet().removeAll(ids); // deleted assets stay out
+                for (var r : repo.fleet(ids)) next.put(r.id(), r);
+            }
+        } catch (Exception e) {
+            if (full) fullReload = true;
+            pendingReloads.addAll(ids);
+            log.warn("[Dashboard] loading fleet snapshot failed: {}", e.getMessage());
+            return;
+        }
+        for (var id : new ArrayList<>(pendingSamples.keySet())) {
+            var s = pendingSamples.remove(id);
+            if (s == null) continue;
+            if (next == null) next = new HashMap<>(rows);
+            next.put(id, apply(next.get(id), s));
+        }
+
+        long lv = live.version();
+        boolean recheck = !Duration.between(current.builtAt(), now).minus(statusRecheck).isNegative();
+        if (next == null && lv == liveVersion && !recheck) return;
+        if (next != null) rows = Collections.unmodifiableMap(next);
+        liveVersion = lv;
+
+        var assets = build(rows.values());
+        var prev = current;
+        current = assets.equals(prev.assets())
+                ? new Snapshot(prev.version(), now, prev.assets()) // same content, same ETag
+                : new Snapshot(prev.version() + 1, now, assets);
+    }
+
+    private List<FleetAssetDTO> build(Collection<AssetListRepo.FleetRow> rows) {
+        int up = props.status().upMinutes(), stale = props.status().staleMinutes();
+        List<FleetAssetDTO> out = new ArrayList<>(rows.size());
+        for (var r : rows) {
+            var l = live.get(r.hostname()).orElse(null);
+            out.add(new FleetAssetDTO(
+                    r.hostname(), r.ip(), r.os(), r.owner(), List.copyOf(AssetTagRepo.parse(r.tags())),
+                    AssetQueryService.computeStatus(r.lastSeen(), up, stale), local(r.lastSeen()),
+                    local(r.metricTs()), r.cpu(), r.ram(), r.disk(),
+                    r.node(), r.vmid(),
+                    l == null ? null : l.vmState(), l == null ? null : l.qgaUp(), l == null ? null : l.ipv4()));
+        }
+        out.sort(Comparator.comparing(FleetAssetDTO::hostname, String.CASE_INSENSITIVE_ORDER));
+        return List.copyOf(out);
+    }
+
+    private static AssetListRepo.FleetRow apply(AssetListRepo.FleetRow r, Sample s) {
+        if (r == null) { // created by this batch: owner/tags/mapping come with the next reload
+            return new AssetListRepo.FleetRow(s.assetId(), s.hostname(), s.ip(), s.os(), null, null, null, null,
+                    s.seen(), s.ts(), s.cpu(), s.ram(), s.disk());
+        }
+        var seen = r.lastSeen() == null || s.seen().isAfter(r.lastSeen()) ? s.seen() : r.lastSeen();
+        boolean newer = r.metricTs() == null || !s.ts().isBefore(r.metricTs());
+        return new AssetListRepo.FleetRow(r.id(), r.hostname(),
+                s.ip() != null ? s.ip() : r.ip(), s.os() != null ? s.os() : r.os(),
+                r.owner(), r.tags(), r.node(), r.vmid(), seen,
+                newer ? s.ts() : r.metricTs(), newer ? s.cpu() : r.cpu(),
+                newer ? s.ram() : r.ram(), newer ? s.disk() : r.disk());
+    }
+
+    /** Coalesce two pending samples of one asset: newest metrics, latest ip/os/lastSeen. */
+    private static Sample newer(Sample a, Sample b) {
+        var m = b.ts().isBefore(a.ts()) ? a : b;
+        return new Sample(a.assetId(), a.hostname(),
+                b.ip() != null ? b.ip() : a.ip(), b.os() != null ? b.os() : a.os(),
+                b.seen().isAfter(a.seen()) ? b.seen() : a.seen(),
+                m.ts(), m.cpu(), m.ram(), m.disk());
+    }
+
+    private static Set<Long> drain(Set<Long> set) {
+        Set<Long> out = new HashSet<>();
+        for (var id : new ArrayList<>(set)) if (set.remove(id)) out.add(id);
+        return out;
+    }
+
+    private static OffsetDateTime local(Instant ts) {
+        return ts == null ? null : ts.atZone(ZoneId.systemDefault()).toOffsetDateTime();
+    }
+}
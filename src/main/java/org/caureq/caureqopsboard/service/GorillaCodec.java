@@ -0,0 +1,173 @@
+package org.caureq.caureqopsboard.service;
+
+import java.util.Arrays;
+
+/**
+ * Lossless time-series compression in the style of Facebook Gorilla (VLDB 2015), for one asset's
+ * samples (ts millis + cpu/ram/disk).
+ *
+ * Timestamps: first value raw (64 bits), then delta-of-delta (two's complement) in
+ * 0/7/9/12/16/36-bit buckets behind a 1-5 bit prefix. dod must fit in 36 bits (chunks span a day).
+ * Values: per series XOR with the previous value; identical -> 1 bit, otherwise the meaningful
+ * bits are written inside the previous leading/trailing-zero window when they fit.
+ * Samples must be sorted by timestamp.
+ */
+final class GorillaCodec {
+    private GorillaCodec() {}
+
+    @FunctionalInterface
+    interface SampleSink {
+        void accept(long tsMillis, double cpu, double ram, double disk);
+    }
+
+    static byte[] encode(long[] ts, double[] cpu, double[] ram, double[] disk, int n) {
+        var out = new BitOutput(Math.max(64, n * 12));
+        if (n == 0) return out.toByteArray();
+        out.write(ts[0], 64);
+        var c = new XorState(); var r = new XorState(); var d = new XorState();
+        c.first(out, cpu[0]); r.first(out, ram[0]); d.first(out, disk[0]);
+        long prevTs = ts[0], prevDelta = 0;
+        for (int i = 1; i < n; i++) {
+            long delta = ts[i] - prevTs;
+            long dod = delta - prevDelta;
+            if (dod == 0) out.writeBit(false);
+            else if (dod >= -64 && dod <= 63) { out.write(0b10, 2); out.write(dod, 7); }
+            else if (dod >= -256 && dod <= 255) { out.write(0b110, 3); out.write(dod, 9); }
+            else if (dod >= -2048 && dod <= 2047) { out.write(0b1110, 4); out.write(dod, 12); }
+            else if (dod >= -32768 && dod <= 32767) { out.write(0b11110, 5); out.write(dod, 16); }
+            else if (dod >= -(1L << 35) && dod < (1L << 35)) { out.write(0b11111, 5); out.write(dod, 36); }
+            else throw new IllegalArgumentException("timestamp delta-of-delta out of range: " + dod);
+            prevDelta = delta;
+            prevTs = ts[i];
+            c.next(out, cpu[i]); r.next(out, ram[i]); d.next(out, disk[i]);
+        }
+        return out.toByteArray();
+    }
+
+    static void decode(byte[] data, int n, SampleSink sink) {
+        if (n == 0) return;
+        var in = new BitInput(data);
+        long ts = in.read(64);
+        var c = new XorState(); var r = new XorState(); var d = new XorState();
+        double cpu = c.first(in), ram = r.first(in), disk = d.first(in);
+        sink.accept(ts, cpu, ram, disk);
+        long delta = 0;
+        for (int i = 1; i < n; i++) {
+            long dod;
+            if (!in.readBit()) dod = 0;
+            else if (!in.readBit()) dod = in.readSigned(7);
+            else if (!in.readBit()) dod = in.readSigned(9);
+            else if (!in.readBit()) dod = in.readSigned(12);
+            else if (!in.readBit()) dod = in.readSigned(16);
+            else dod = in.readSigned(36);
+            delta += dod;
+            ts += delta;
+            cpu = c.next(in); ram = r.next(in); disk = d.next(in);
+            sink.accept(ts, cpu, ram, disk);
+        }
+    }
+
+    /** XOR state of one value series (previous bits and zero window). */
+    private static final class XorState {
+        long prev;
+        int leading = Integer.MAX_VALUE, trailing;
+
+        void first(BitOutput out, double v) {
+            prev = Double.doubleToRawLongBits(v);
+            out.write(prev, 64);
+        }
+
+        double first(BitInput in) {
+            prev = in.read(64);
+            return Double.longBitsToDouble(prev);
+        }
+
+        void next(BitOutput out, double v) {
+            long bits = Double.doubleToRawLongBits(v);
+            long xor = bits ^ prev;
+            prev = bits;
+            if (xor == 0) { out.writeBit(false); return; }
+            out.writeBit(true);
+            int lz = Math.min(31, Long.numberOfLeadingZeros(xor));
+            int tz = Long.numberOfTrailingZeros(xor);
+            if (leading != Integer.MAX_VALUE && lz >= leading && tz >= trailing) {
+                out.writeBit(false);
+                out.write(xor >>> trailing, 64 - leading - trailing);
+            } else {
+                out.writeBit(true);
+                int sig = 64 - lz - tz;
+                out.write(lz, 5);
+                out.write(sig - 1, 6); // 1..64 stored as 0..63
+                out.write(xor >>> tz, sig);
+                leading = lz;
+                trailing = tz;
+            }
+        }
+
+        double next(BitInput in) {
+            if (in.readBit()) {
+                if (in.readBit()) {
+                    leading = (int) in.read(5);
+                    int sig = (int) in.read(6) + 1;
+                    trailing = 64 - leading - sig;
+                }
+                int sig = 64 - leading - trailing;
+                prev ^= in.read(sig) << trailing;
+            }
+            return Double.longBitsToDouble(prev);
+        }
+    }
+
+    private static final class BitOutput {
+        private byte[] buf;
+        private long bitPos;
+
+        BitOutput(int initialBytes) { buf = new byte[initialBytes]; }
+
+        void writeBit(boolean b) {
+            ensure(1);
+            if (b) buf[(int) (bitPos >>> 3)] |= (byte) (0x80 >>> (bitPos & 7));
+            bitPos++;
+        }
+
+        /** Low `bits` bits of v, most significant first. */
+        void write(long v, int bits) {
+            ensure(bits);
+            for (int i = bits - 1; i >= 0; i--) {
+                if (((v >>> i) & 1L) != 0) buf[(int) (bitPos >>> 3)] |= (byte) (0x80 >>> (bitPos & 7));
+                bitPos++;
+            }
+        }
+
+        private void ensure(int bits) {
+            long need = (bitPos + bits + 7) >>> 3;
+            if (need > buf.length) buf = Arrays.copyOf(buf, (int) Math.max(need, buf.length * 2L));
+        }
+
+        byte[] toByteArray() { return Arrays.copyOf(buf, (int) ((bitPos + 7) >>> 3)); }
+    }
+
+    private static final class BitInput {
+        private final byte[] buf;
+        private long bitPos;
+
+        BitInput(byte[] buf) { this.buf = buf; }
+
+        boolean readBit() {
+            boolean b = (buf[(int) (bitPos >>> 3)] & (0x80 >>> (bitPos & 7))) != 0;
+            bitPos++;
+            return b;
+        }
+
+        long read(int bits) {
+            long v = 0;
+            for (int i = 0; i < bits; i++) v = (v << 1) | (readBit() ? 1L : 0L);
+            return v;
+        }
+
+        long readSigned(int bits) {
+            long v = read(bits);
+            return (v << (64 - bits)) >> (64 - bits); // sign-extend two's complement
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package org.caureq.caureqopsboard.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.caureq.caureqopsboard.api.dto.IngestDTO;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded in-memory ingest queue drained by a small pool of writer threads.
+ *
+ * Responsibilities
+ * - Accept validated samples without blocking the request thread (offer fails fast when full).
+ * - Drain in batches into IngestService.ingestBatch; fall back to per-sample writes if a batch fails.
+ * - Publish depth, drops, failures and drain latency as Micrometer meters (ingest.queue.*).
+ *
+ * Patterns
+ * - Producer/consumer over a ring buffer (ArrayBlockingQueue).
+ * - Lifecycle-managed: stops after the web server so queued samples are flushed on shutdown.
+ *   Writer threads start when app.ingest.async or app.ingest.line.enabled is set (the line
+ *   protocol listener only ever offers to this queue).
+ */
+@Slf4j
+@Component
+public class IngestQueue implements SmartLifecycle {
+    private final IngestService ingestService;
+    private final BlockingQueue<IngestDTO> queue;
+    private final int workers;
+    private final int maxBatch;
+    private final boolean enabled;
+
+    private final Counter accepted;
+    private final Counter dropped;
+    private final Counter failed;
+    private final Timer drainTimer;
+    private final DistributionSummary batchSize;
+
+    private volatile boolean running;
+    private ExecutorService pool;
+
+    public IngestQueue(IngestService ingestService, MeterRegistry registry,
+                       @Value("${app.ingest.queue.capacity:10000}") int capacity,
+                       @Value("${app.ingest.queue.workers:2}") int workers,
+                       @Value("${app.ingest.queue.max-batch:500}") int maxBatch,
+                       @Value("${app.ingest.async:false}") boolean async,
+                       @Value("${app.ingest.line.enabled:false}") boolean lineEnabled) {
+        this.ingestService = ingestService;
+        this.enabled = async || lineEnabled;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+        this.workers = Math.max(1, workers);
+        this.maxBatch = Math.max(1, maxBatch);
+
+        Gauge.builder("ingest.queue.depth", queue, BlockingQueue::size)
+                .description("Samples waiting to be written").register(registry);
+        Gauge.builder("ingest.queue.capacity", queue, q -> q.size() + q.remainingCapacity())
+                .register(registry);
+        this.accepted = Counter.builder("ingest.queue.accepted").register(registry);
+        this.dropped = Counter.builder("ingest.queue.dropped")
+                .description("Samples rejected because the queue was full").register(registry);
+        this.failed = Counter.builder("ingest.queue.failed")
+                .description("Samples that could not be persisted").register(registry);
+        this.drainTimer = Timer.builder("ingest.queue.drain")
+                .description("Time to persist one drained batch").register(registry);
+        this.batchSize = DistributionSummary.builder("ingest.queue.batch.size").register(registry);
+    }
+
+    /** Enqueue a sample; returns false when the queue is full (caller should answer 429). */
+    public boolean offer(IngestDTO d) {
+        if (!running || !queue.offer(d)) {
+            dropped.increment();
+            return false;
+        }
+        accepted.increment();
+        return true;
+    }
+
+    public int depth() { return queue.size(); }
+
+    private void drainLoop() {
+        List<IngestDTO> batch = new ArrayList<>(maxBatch);
+        while (running || !queue.isEmpty()) {
+            try {
+                var first = queue.poll(500, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                queue.drainTo(batch, maxBatch - 1);
+                batchSize.record(batch.size());
+                drainTimer.record(() -> write(batch));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<IngestDTO> batch) {
+        try {
+            ingestService.ingestBatch(batch);
+        } catch (Exception e) {
+            log.warn("ingest batch of {} failed, retrying one by one: {}", batch.size(), e.getMessage());
+            for (var d : batch) {
+                try { ingestService.ingest(d); }
+                catch (Exception ex) {
+                    failed.increment();
+                    log.debug("ingest failed for {}: {}", d.hostname(), ex.getMessage());
+                }
+            }
+        }
+    }
+
+    @Override
+    public void start() {
+        if (!enabled) return; // synchronous ingest and no line protocol: no writer threads
+        var seq = new AtomicInteger();
+        pool = Executors.newFixedThreadPool(workers, r -> {
+            var t = new Thread(r, "ingest-writer-" + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        running = true;
+        for (int i = 0; i < workers; i++) pool.submit(this::drainLoop);
+        log.info("[Ingest] queue started capacity={} workers={} maxBatch={}",
+                queue.remainingCapacity(), workers, maxBatch);
+    }
+
+    @Override
+    public void stop() {
+        running = false; // workers keep draining until the queue is empty
+        if (pool == null) return;
+        pool.shutdown();
+        try {
+            if (!pool.awaitTermination(30, TimeUnit.SECONDS)) {
+                log.warn("[Ingest] shutdown timed out, {} samples not written", queue.size());
+                pool.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() { return running; }
+
+    /** Start before / stop after the web server so no accepted sample is lost. */
+    @Override
+    public int getPhase() { return SmartLifecycle.DEFAULT_PHASE - 4096; }
+}
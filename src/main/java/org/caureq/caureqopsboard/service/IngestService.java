@@ -3,15 +3,22 @@ package org.caureq.caureqopsboard.service;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.caureq.caureqopsboard.api.dto.IngestDTO;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
 import org.caureq.caureqopsboard.domain.Asset;
 import org.caureq.caureqopsboard.domain.Metric;
+import org.caureq.caureqopsboard.repo.AssetLatestMetricRepo;
 import org.caureq.caureqopsboard.repo.AssetRepo;
+import org.caureq.caureqopsboard.repo.AssetTouchRepo;
+import org.caureq.caureqopsboard.repo.MetricChunkRepo;
+import org.caureq.caureqopsboard.repo.MetricCopyWriter;
+import org.caureq.caureqopsboard.repo.MetricReplayRepo;
 import org.caureq.caureqopsboard.repo.MetricRepo;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Instant;
+import java.util.*;
 
 @Slf4j
 @Service
@@ -19,46 +26,281 @@ import java.time.Instant;
 public class IngestService {
     private final AssetRepo assetRepo;
     private final MetricRepo metricRepo;
+    private final MetricCopyWriter copyWriter;
+    private final AssetTouchCoalescer touches;
+    private final AssetIdCache assetIds;
     private final AlertService alertService; // simple log en v1
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ServiceStateService serviceStates;
+    private final AgentSequenceTracker sequences;
+    private final MetricRollupEngine rollups;
+    private final RecentMetricsBuffer recent;
+    private final MetricWindowCache windows;
+    private final AssetLatestMetricRepo latestMetrics;
+    private final MetricReplayRepo replayRepo;
+    private final MetricChunkRepo chunkRepo;
+    private final MetricCompactor compactor;
+    private final FleetSnapshot fleet;
+    private final IngestStreamParser streamParser;
+    private final EntityManager entityManager;
+
+    /** Batches at least this large are written with COPY instead of JPA batch inserts. */
+    @Value("${app.ingest.copy-threshold:1000}")
+    private int copyThreshold;
+    @Value("${app.ingest.stream-chunk:500}")
+    private int streamChunk;
+    /** Client timestamps further than this from server time are not trusted on the live path. */
+    @Value("${app.ingest.max-clock-skew-seconds:300}")
+    private long maxClockSkewSeconds;
+    /** Oldest sample accepted by replay. */
+    @Value("${app.ingest.replay-max-age-hours:168}")
+    private long replayMaxAgeHours;
 
     @Transactional
     public void ingest(IngestDTO d) {
-        var hostname = d.hostname().trim();
-        var ip = d.ip().trim();
-        var os = (d.os() == null) ? "" : d.os().trim();
+        ingestBatch(List.of(d));
+        log.debug("ingested {} cpu={} ram={} disk={}", d.hostname(), d.cpu(), d.ram(), d.disk());
+    }
 
-        var asset = assetRepo.findByHostnameIgnoreCase(hostname)
-                .orElseGet(() -> {
-                    var a = new Asset();
-                    a.setHostname(hostname);
-                    return a;
-                });
+    /**
+     * Ingest many samples in one transaction.
+     * Asset ids come from AssetIdCache (DB lookup only on miss); ip/os/lastSeen go to the
+     * write-behind AssetTouchCoalescer, service states go to ServiceStateService (transitions only),
+     * the per-asset asset_latest_metric snapshot is upserted,
+     * and metrics are flushed as JDBC batches
+     * (hibernate.jdbc.batch_size + reWriteBatchedInserts => multi-row INSERTs).
+     * Samples whose (agentId, seq) was already accepted are dropped first (AgentSequenceTracker).
+     * @return number of samples persisted
+     */
+    @Transactional
+    public int ingestBatch(List<IngestDTO> batch) {
+        if (batch == null || batch.isEmpty()) return 0;
+        batch = sequences.admit(batch); // drop retried duplicates before any DB work
+        if (batch.isEmpty()) return 0;
+        var now = Instant.now();
+        var ids = resolveAssetIds(batch, now);
 
-        // IP v1: do not overwrite with invalid/placeholder IPv4
-        if (isUsableIpv4(ip)) {
-            asset.setIp(ip);
+        List<Metric> metrics = new ArrayList<>(batch.size());
+        List<Long> assetIdList = new ArrayList<>(batch.size());
+        List<Map<String, String>> services = new ArrayList<>(batch.size());
+        List<Instant> ts = new ArrayList<>(batch.size());
+        List<FleetSnapshot.Sample> fleetSamples = new ArrayList<>(batch.size());
+        List<AssetTouchRepo.Touch> touchList = new ArrayList<>(batch.size());
+        for (var d : batch) {
+            long id = ids.get(AssetIdCache.key(d.hostname()));
+            var at = sampleTs(d, now);
+            var touch = toTouch(id, d, now);
+            touchList.add(touch);
+            fleetSamples.add(new FleetSnapshot.Sample(id, d.hostname().trim(), touch.ip(), touch.os(), now,
+                    at, d.cpu(), d.ram(), d.disk()));
+            metrics.add(toMetric(assetRepo.getReferenceById(id), d, at));
+            assetIdList.add(id);
+            services.add(d.services());
+            ts.add(at);
+        }
+        serviceStates.record(assetIdList, services, ts);
+        if (metrics.size() >= copyThreshold) copyWriter.writeMetrics(metrics);
+        else metricRepo.saveAll(metrics);
+        latestMetrics.upsertNewest(latest(assetIdList, metrics));
+        appendAfterCommit(assetIdList, metrics);
+        touchAfterCommit(touchList);
+        AfterCommit.run(() -> fleet.record(fleetSamples));
+
+        for (int i = 0; i < metrics.size(); i++) {
+            var id = ids.get(AssetIdCache.key(batch.get(i).hostname()));
+            alertService.evaluateOnIngest(batch.get(i).hostname().trim(), metrics.get(i),
+                    () -> assetRepo.getReferenceById(id));
+        }
+        log.debug("ingested batch of {} samples ({} hosts)", metrics.size(), ids.size());
+        return metrics.size();
+    }
+
+    /**
+     * Ingest a JSON array body parsed incrementally (see IngestStreamParser).
+     * All chunks share one transaction; the persistence context is cleared between chunks
+     * so heap use does not grow with the body size. A body that breaks off or turns malformed
+     * (IOException, checked) rolls back every chunk already flushed, so a retry does not duplicate them.
+     * @return samples persisted (duplicates dropped by sequence dedup are not counted) and rejected
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public IngestStreamParser.Result ingestStream(java.io.InputStream body, int max) throws java.io.IOException {
+        int[] persisted = {0};
+        var r = streamParser.parse(body, streamChunk, max, chunk -> {
+            persisted[0] += ingestBatch(chunk);
+            entityManager.flush();
+            entityManager.clear();
+        });
+        return new IngestStreamParser.Result(persisted[0], r.rejected());
+    }
+
+    /**
+     * Store-and-forward replay: samples buffered by an agent while offline, uploaded late.
+     * Each sample must carry ts within [now - replay-max-age-hours, now + max-clock-skew-seconds];
+     * others are rejected. Rows go straight to COPY; no alerts are evaluated and service states
+     * are not touched (they describe the present), and lastSeen only moves forward.
+     * Replays are deduplicated on (asset, ts) against stored history, not through the live
+     * sequence window: buffered samples are typically far behind the agent's live seq.
+     * Like ingestStream, a malformed or oversized body rolls back the chunks already written.
+     * @return samples persisted (duplicates are not counted) and rejected
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public IngestStreamParser.Result replayStream(java.io.InputStream body, int max) throws java.io.IOException {
+        int[] persisted = {0}, late = {0};
+        var r = streamParser.parse(body, streamChunk, max, chunk -> {
+            var c = replayBatch(chunk);
+            persisted[0] += c.persisted();
+            late[0] += c.late();
+            entityManager.flush();
+            entityManager.clear();
+        });
+        return new IngestStreamParser.Result(persisted[0], r.rejected() + late[0]);
+    }
+
+    private record ReplayCount(int persisted, int late) {}
+
+    private record SampleKey(long assetId, long tsMillis) {}
+
+    private ReplayCount replayBatch(List<IngestDTO> chunk) {
+        var now = Instant.now();
+        var oldest = now.minus(java.time.Duration.ofHours(replayMaxAgeHours));
+        var newest = now.plusSeconds(maxClockSkewSeconds);
+        List<IngestDTO> ok = new ArrayList<>(chunk.size());
+        for (var d : chunk) {
+            if (d.ts() != null && !d.ts().isBefore(oldest) && !d.ts().isAfter(newest)) ok.add(d);
+        }
+        int late = chunk.size() - ok.size();
+        if (ok.isEmpty()) return new ReplayCount(0, late);
+        var ids = resolveAssetIds(ok, now);
+        var from = ok.stream().map(IngestDTO::ts).min(Instant::compareTo).orElseThrow();
+        var to = ok.stream().map(IngestDTO::ts).max(Instant::compareTo).orElseThrow();
+        replayRepo.lock(ids.values());
+        var stored = storedSamples(ids.values(), from, to);
+        List<MetricCopyWriter.Row> rows = new ArrayList<>(ok.size());
+        List<AssetTouchRepo.Touch> touchList = new ArrayList<>(ok.size());
+        for (var d : ok) {
+            long id = ids.get(AssetIdCache.key(d.hostname()));
+            if (!stored.add(new SampleKey(id, d.ts().toEpochMilli()))) continue; // already stored or repeated in the body
+            touchList.add(new AssetTouchRepo.Touch(id, null, null, d.ts()));
+            rows.add(new MetricCopyWriter.Row(id, d.cpu(), d.ram(), d.disk(), null, d.ts()));
+        }
+        if (rows.isEmpty()) return new ReplayCount(0, late);
+        copyWriter.write(rows);
+        touchAfterCommit(touchList);
+        latestMetrics.upsertNewest(rows.stream().map(r ->
+                new AssetLatestMetricRepo.Latest(r.assetId(), r.ts(), r.cpu(), r.ram(), r.disk())).toList());
+        AfterCommit.run(() -> ids.values().forEach(id -> { // history written behind the buffers
+            recent.evict(id);
+            windows.invalidate(id);
+        }));
+        ids.values().forEach(fleet::reload); // latest sample or lastSeen may have moved
+        rollups.markDirty(from, to, ids.values());
+        log.debug("replayed {} samples ({} hosts)", rows.size(), ids.size());
+        return new ReplayCount(rows.size(), late);
+    }
+
+    /** (asset, ts millis) already stored in [from, to]: hot rows, plus cold chunks before the compaction horizon. */
+    private Set<SampleKey> storedSamples(Collection<Long> assetIds, Instant from, Instant to) {
+        Set<SampleKey> out = new HashSet<>();
+        replayRepo.timestamps(assetIds, from, to, (id, t) -> out.add(new SampleKey(id, t)));
+        var horizon = compactor.horizon();
+        if (!from.isBefore(horizon)) return out;
+        var series = new MetricSeries(0);
+        for (var id : assetIds) {
+            for (var c : chunkRepo.overlapping(id, from, to.isBefore(horizon) ? to : horizon)) {
+                series.clear();
+                series.decodeFrom(c.data(), c.n());
+                for (int i = 0; i < series.size; i++) out.add(new SampleKey(id, series.ts[i]));
+            }
+        }
+        return out;
+    }
+
+    /** Agent timestamp when within the skew guard, server time otherwise. */
+    private Instant sampleTs(IngestDTO d, Instant now) {
+        var ts = d.ts();
+        if (ts == null) return now;
+        long skew = Math.abs(java.time.Duration.between(ts, now).getSeconds());
+        return skew <= maxClockSkewSeconds ? ts : now;
+    }
+
+    /** hostname key -> asset id, from cache first, then one bulk lookup, creating unknown assets. */
+    private Map<String, Long> resolveAssetIds(List<IngestDTO> batch, Instant now) {
+        Map<String, Long> ids = new HashMap<>();
+        Map<String, IngestDTO> missing = new HashMap<>(); // key -> first sample of that host
+        for (var d : batch) {
+            var key = AssetIdCache.key(d.hostname());
+            if (ids.containsKey(key) || missing.containsKey(key)) continue;
+            var id = assetIds.get(key);
+            if (id != null) ids.put(key, id);
+            else missing.put(key, d);
         }
-        asset.setOs(os);
-        asset.setLastSeen(Instant.now());
-        assetRepo.save(asset);
+        if (missing.isEmpty()) return ids;
 
-        String servicesJson;
-        try { servicesJson = objectMapper.writeValueAsString(d.services()); }
-        catch (Exception e) { servicesJson = String.valueOf(d.services()); }
+        for (var a : assetRepo.findByHostnameLowerIn(missing.keySet())) {
+            var key = AssetIdCache.key(a.getHostname());
+            ids.put(key, a.getId());
+            assetIds.put(key, a.getId());
+            missing.remove(key);
+        }
+        for (var e : missing.entrySet()) {
+            var d = e.getValue();
+            var t = toTouch(0, d, now);
+            var a = new Asset();
+            a.setHostname(d.hostname().trim());
+            a.setIp(t.ip());
+            a.setOs(t.os());
+            a.setLastSeen(now);
+            a = assetRepo.save(a);
+            ids.put(e.getKey(), a.getId());
+            cacheAfterCommit(e.getKey(), a.getId());
+        }
+        return ids;
+    }
 
-        var m = Metric.builder()
+    private static List<AssetLatestMetricRepo.Latest> latest(List<Long> assetIds, List<Metric> metrics) {
+        List<AssetLatestMetricRepo.Latest> out = new ArrayList<>(metrics.size());
+        for (int i = 0; i < metrics.size(); i++) {
+            var m = metrics.get(i);
+            out.add(new AssetLatestMetricRepo.Latest(assetIds.get(i), m.getTs(), m.getCpu(), m.getRam(), m.getDisk()));
+        }
+        return out;
+    }
+
+    /** Committed samples feed RecentMetricsBuffer (latest/short summaries without DB reads). */
+    private void appendAfterCommit(List<Long> assetIds, List<Metric> metrics) {
+        AfterCommit.run(() -> {
+            for (int i = 0; i < metrics.size(); i++) {
+                var m = metrics.get(i);
+                recent.append(assetIds.get(i), m.getTs().toEpochMilli(), m.getCpu(), m.getRam(), m.getDisk());
+            }
+        });
+    }
+
+    /** ip/os/lastSeen go to the write-behind coalescer only once the samples are committed. */
+    private void touchAfterCommit(List<AssetTouchRepo.Touch> touchList) {
+        AfterCommit.run(() -> touchList.forEach(touches::record));
+    }
+
+    /** New ids are only cached once committed, so a rolled-back insert never leaves a stale entry. */
+    private void cacheAfterCommit(String key, Long id) {
+        AfterCommit.run(() -> assetIds.put(key, id));
+    }
+
+    private AssetTouchRepo.Touch toTouch(long assetId, IngestDTO d, Instant now) {
+        var ip = d.ip().trim();
+        var os = (d.os() == null || d.os().isBlank()) ? null : d.os().trim(); // null keeps the stored OS
+        // IP v1: do not overwrite with invalid/placeholder IPv4
+        return new AssetTouchRepo.Touch(assetId, isUsableIpv4(ip) ? ip : null, os, now);
+    }
+
+    /** services are no longer copied into every sample; see ServiceStateService. */
+    private Metric toMetric(Asset asset, IngestDTO d, Instant ts) {
+        return Metric.builder()
                 .asset(asset)
                 .cpu(d.cpu())
                 .ram(d.ram())
                 .disk(d.disk())
-                .services(servicesJson)
-                .ts(Instant.now())
+                .ts(ts)
                 .build();
-        metricRepo.save(m);
-
-        alertService.evaluateOnIngest(asset, m);
-        log.debug("ingested {} cpu={} ram={} disk={}", hostname, d.cpu(), d.ram(), d.disk());
     }
 
     private boolean isUsableIpv4(String ip){
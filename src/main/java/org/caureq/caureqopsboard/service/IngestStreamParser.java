@@ -0,0 +1,74 @@
+package org.caureq.caureqopsboard.service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.Validator;
+import lombok.RequiredArgsConstructor;
+import org.caureq.caureqopsboard.api.dto.IngestDTO;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Incremental parser for ingest bodies: a JSON array of samples (or a single object).
+ *
+ * Elements are bound one at a time with a streaming JsonParser, validated, and handed to the
+ * sink in chunks, so memory stays proportional to the chunk size and not to the body size.
+ */
+@Component
+@RequiredArgsConstructor
+public class IngestStreamParser {
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+
+    public record Result(int accepted, int rejected) {}
+
+    /**
+     * @param max upper bound on elements; exceeding it throws IllegalArgumentException
+     * @throws IOException on malformed JSON (the element structure itself is broken)
+     */
+    public Result parse(InputStream in, int chunkSize, int max, Consumer<List<IngestDTO>> sink) throws IOException {
+        int accepted = 0, rejected = 0, seen = 0;
+        List<IngestDTO> chunk = new ArrayList<>(chunkSize);
+        try (JsonParser p = objectMapper.getFactory().createParser(in)) {
+            var first = p.nextToken();
+            boolean array = first == JsonToken.START_ARRAY;
+            if (!array && first != JsonToken.START_OBJECT) {
+                throw new IllegalArgumentException("expected a JSON array of samples");
+            }
+            var tok = array ? p.nextToken() : first;
+            while (tok != null && tok != JsonToken.END_ARRAY) {
+                if (++seen > max) throw new IllegalArgumentException("batch too large: more than " + max + " samples");
+                IngestDTO d = null;
+                if (tok == JsonToken.START_OBJECT) {
+                    // one small tree per element keeps a bad element from derailing the stream
+                    JsonNode node = p.readValueAsTree();
+                    try { d = objectMapper.treeToValue(node, IngestDTO.class); }
+                    catch (IllegalArgumentException | IOException e) { d = null; }
+                } else {
+                    p.skipChildren();
+                }
+                if (d != null && validator.validate(d).isEmpty()) {
+                    chunk.add(d);
+                    accepted++;
+                    if (chunk.size() >= chunkSize) {
+                        sink.accept(chunk);
+                        chunk = new ArrayList<>(chunkSize);
+                    }
+                } else {
+                    rejected++;
+                }
+                if (!array) break;
+                tok = p.nextToken();
+            }
+        }
+        if (!chunk.isEmpty()) sink.accept(chunk);
+        return new Result(accepted, rejected);
+    }
+}
@@ -6,6 +6,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.caureq.caureqopsboard.domain.Asset;
 import org.caureq.caureqopsboard.repo.AssetRepo;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.*;
 import java.util.regex.Matcher;
@@ -34,6 +35,9 @@ import java.util.regex.Pattern;
 public class InventoryDiscoveryService {
     private final ProxmoxClient proxmox;
     private final AssetRepo assetRepo;
+    private final AssetIdCache assetIds;
+    private final AssetTagIndex tagIndex;
+    private final FleetSnapshot fleet;
 
     public record Proposal(String hostname, String node, Integer vmid, String reason) {}
     public record PreviewResult(List<Proposal> toUpdate,
@@ -160,7 +164,8 @@ public class InventoryDiscoveryService {
         return new PreviewResult(proposals, unknown, missing);
     }
 
-    /** Apply mapping proposals to DB (idempotent, only updates node/vmid). */
+    /** Apply mapping proposals to DB (idempotent, only updates node/vmid), in one transaction. */
+    @Transactional
     public int apply(List<Proposal> list) {
         int updated = 0;
         for (var p : list) {
@@ -170,13 +175,16 @@ public class InventoryDiscoveryService {
                 a.setNode(p.node());
                 a.setVmid(p.vmid());
                 assetRepo.save(a);
+                assetIds.invalidate(a.getHostname());
+                fleet.reload(a.getId());
                 updated++;
             }
         }
         return updated;
     }
 
-    /** Clear node/vmid mapping for given hostnames (no deletion). */
+    /** Clear node/vmid mapping for given hostnames (no deletion), in one transaction. */
+    @Transactional
     public int clearMappings(List<String> hostnames) {
         if (hostnames == null || hostnames.isEmpty()) return 0;
         int updated = 0;
@@ -188,6 +196,8 @@ public class InventoryDiscoveryService {
                     a.setNode(null);
                     a.setVmid(null);
                     assetRepo.save(a);
+                    assetIds.invalidate(a.getHostname());
+                    fleet.reload(a.getId());
                     updated++;
                 }
             }
@@ -195,7 +205,12 @@ public class InventoryDiscoveryService {
         return updated;
     }
 
-    /** Archive (retire) missing assets by adding 'retired' tag and clearing mapping. */
+    /**
+     * Archive (retire) missing assets by adding 'retired' tag and clearing mapping. One transaction:
+     * the asset rows and their asset_tag rows commit together, and the in-memory tag index and
+     * fleet snapshot only see them after commit.
+     */
+    @Transactional
     public int archiveMissing(List<String> hostnames) {
         if (hostnames == null || hostnames.isEmpty()) return 0;
         int updated = 0;
@@ -215,6 +230,9 @@ public class InventoryDiscoveryService {
                     a.setTags((tags==null||tags.isBlank()) ? "retired" : (tags + ",retired"));
                 }
                 assetRepo.save(a);
+                if (!has) tagIndex.sync(a);
+                assetIds.invalidate(a.getHostname());
+                fleet.reload(a.getId());
                 updated++;
             }
         }
@@ -5,6 +5,7 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.caureq.caureqopsboard.domain.Asset;
 import org.caureq.caureqopsboard.repo.AssetRepo;
+import org.caureq.caureqopsboard.repo.AssetTouchRepo;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
@@ -12,6 +13,7 @@ import org.springframework.stereotype.Service;
 import java.time.Instant;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Pattern;
 
 /**
@@ -33,6 +35,7 @@ public class LiveStatusService {
     private final ProxmoxClient proxmox;
     private final org.caureq.caureqopsboard.config.AppProps props;
     private final ActionService actionService;
+    private final AssetTouchCoalescer touches;
 
     @Value("${app.status.refresh-ms:30000}")
     private long refreshMs;
@@ -45,9 +48,17 @@ public class LiveStatusService {
                              Instant fetchedAt) {}
 
     private final Map<String, LiveStatus> cache = new ConcurrentHashMap<>();
+    private final AtomicLong version = new AtomicLong();
 
     public List<LiveStatus> all() { return new ArrayList<>(cache.values()); }
     public Optional<LiveStatus> get(String hostname) { return Optional.ofNullable(cache.get(hostname)); }
+    /** Bumped on every cache write, so readers (FleetSnapshot) can tell when to look again. */
+    public long version() { return version.get(); }
+
+    private void put(String hostname, LiveStatus s) {
+        cache.put(hostname, s);
+        version.incrementAndGet();
+    }
 
     /** Refresh the in-memory live cache for all assets. */
     @Scheduled(fixedDelayString = "${app.status.refresh-ms:30000}")
@@ -67,7 +78,7 @@ public class LiveStatusService {
                                 var first = (java.util.Map<?,?>) list.get(0);
                                 topPid = toInt(first.get("pid")); topName = toStr(first.get("name")); topCpu = toDbl(first.get("cpu")); topMem = toDbl(first.get("mem"));
                             }
-                            cache.put(a.getHostname(), new LiveStatus(a.getHostname(), null, null, null, null, null, topPid, topName, topCpu, topMem, Instant.now()));
+                            put(a.getHostname(), new LiveStatus(a.getHostname(), null, null, null, null, null, topPid, topName, topCpu, topMem, Instant.now()));
                         }
                     } catch (Exception ignored) {}
                     continue;
@@ -79,7 +90,7 @@ public class LiveStatusService {
                 } catch (ProxmoxApiException ex) {
                     // If VM is missing in Proxmox, tag as 'missing' so UI can highlight
                     if (ex.status() == 404) {
-                        cache.put(a.getHostname(), new LiveStatus(a.getHostname(), meta.node, meta.vmid,
+                        put(a.getHostname(), new LiveStatus(a.getHostname(), meta.node, meta.vmid,
                                 "missing", null, null, null, null, null, null, Instant.now()));
                         continue;
                     }
@@ -110,7 +121,7 @@ public class LiveStatusService {
                     }
                 }
 
-                cache.put(a.getHostname(), new LiveStatus(
+                put(a.getHostname(), new LiveStatus(
                         a.getHostname(), meta.node, meta.vmid,
                         state, qga, ip,
                         topPid, topName, topCpu, topMem,
@@ -123,8 +134,8 @@ public class LiveStatusService {
                     var ls = a.getLastSeen();
                     // évite les writes trop fréquents si déjà récent (< refreshMs/2)
                     if (ls == null || now.minusMillis(Math.max(5000, refreshMs / 2)).isAfter(ls)) {
-                        a.setLastSeen(now);
-                        try { assetRepo.save(a); } catch (Exception e) { log.debug("lastSeen save failed for {}: {}", a.getHostname(), e.getMessage()); }
+                        // write-behind: coalesced with ingest touches, flushed as one UPDATE
+                        touches.record(new AssetTouchRepo.Touch(a.getId(), null, null, now));
                     }
                 }
             } catch (Exception e) {
@@ -170,12 +181,14 @@ public class LiveStatusService {
     public LiveStatusService(AssetRepo assetRepo, ProxmoxClient proxmox,
                              org.caureq.caureqopsboard.config.AppProps props,
                              LocalDiagnosticService local,
-                             ActionService actionService) {
+                             ActionService actionService,
+                             AssetTouchCoalescer touches) {
         this.assetRepo = assetRepo;
         this.proxmox = proxmox;
         this.props = props;
         this.local = local;
         this.actionService = actionService;
+        this.touches = touches;
     }
     private Integer toInt(Object o){ try { return o==null?null: Integer.parseInt(String.valueOf(o)); } catch(Exception e){ return null; } }
     private String toStr(Object o){ return o==null?null:String.valueOf(o); }
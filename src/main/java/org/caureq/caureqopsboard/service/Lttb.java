@@ -0,0 +1,65 @@
+package org.caureq.caureqopsboard.service;
+
+import org.caureq.caureqopsboard.api.dto.MetricPointDTO;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Largest-Triangle-Three-Buckets downsampling of a metric series (cpu, ram and disk together).
+ *
+ * One pass over the points: the first and last points are kept, the rest is split into
+ * (threshold - 2) buckets and each bucket keeps the point forming the largest triangle with the
+ * previously kept point and the average of the next bucket. The area is summed over the three
+ * series, so a spike in any of them survives; x is the timestamp, so irregular spacing is honoured.
+ */
+final class Lttb {
+    private Lttb() {}
+
+    static List<MetricPointDTO> downsample(List<MetricPointDTO> pts, int threshold) {
+        int n = pts.size();
+        if (threshold <= 2 || n <= threshold) return pts;
+
+        List<MetricPointDTO> out = new ArrayList<>(threshold);
+        double every = (double) (n - 2) / (threshold - 2);
+        int a = 0;
+        out.add(pts.get(0));
+
+        for (int i = 0; i < threshold - 2; i++) {
+            // average of the next bucket (the last point when this is the final bucket)
+            int nextStart = (int) Math.floor((i + 1) * every) + 1;
+            int nextEnd = Math.min((int) Math.floor((i + 2) * every) + 1, n);
+            if (nextStart >= nextEnd) { nextStart = n - 1; nextEnd = n; }
+            double ax = 0, acpu = 0, aram = 0, adisk = 0;
+            for (int j = nextStart; j < nextEnd; j++) {
+                var p = pts.get(j);
+                ax += x(p); acpu += p.cpu(); aram += p.ram(); adisk += p.disk();
+            }
+            int len = nextEnd - nextStart;
+            ax /= len; acpu /= len; aram /= len; adisk /= len;
+
+            int start = (int) Math.floor(i * every) + 1;
+            int end = (int) Math.floor((i + 1) * every) + 1;
+            var pa = pts.get(a);
+            double px = x(pa);
+            double maxArea = -1;
+            int chosen = start;
+            for (int j = start; j < end; j++) {
+                var p = pts.get(j);
+                double dx = px - ax, jx = x(p) - px;
+                double area = Math.abs(dx * (p.cpu() - pa.cpu()) - (pa.cpu() - acpu) * jx)
+                        + Math.abs(dx * (p.ram() - pa.ram()) - (pa.ram() - aram) * jx)
+                        + Math.abs(dx * (p.disk() - pa.disk()) - (pa.disk() - adisk) * jx);
+                if (area > maxArea) { maxArea = area; chosen = j; }
+            }
+            out.add(pts.get(chosen));
+            a = chosen;
+        }
+        out.add(pts.get(n - 1));
+        return out;
+    }
+
+    private static double x(MetricPointDTO p) {
+        return p.ts().toInstant().toEpochMilli() / 1000.0;
+    }
+}
@@ -0,0 +1,128 @@
+package org.caureq.caureqopsboard.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.caureq.caureqopsboard.repo.MetricChunkRepo;
+import org.caureq.caureqopsboard.repo.MetricPartitionRepo;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.TreeSet;
+
+/**
+ * Compacts cold raw metrics into Gorilla-encoded chunks (metric_chunk), one per asset and UTC day.
+ *
+ * Responsibilities
+ * - Daily, for every day older than app.metrics.compact-after-days that still has raw rows:
+ *   encode each asset's samples (merged with an existing chunk, e.g. after a late replay),
+ *   upsert the chunk and drop the day's partition / default-partition rows, in one transaction.
+ *   The day's partition and metrics_default are locked against writers first, so a late replay
+ *   or import cannot commit rows between the read and the drop/delete (it waits, then lands in
+ *   the default partition and is picked up by the next run).
+ * - Purge chunks older than app.metrics.retention-days.
+ *
+ * Rollups are computed from raw rows before they reach this age; late rows landing on a compacted
+ * day are re-aggregated by MetricRollupEngine from the chunk merged with those rows.
+ * The legacy services column is not carried into chunks. compact-after-days <= 0 disables compaction.
+ */
+@Slf4j
+@Component
+public class MetricCompactor {
+    private final MetricChunkRepo chunkRepo;
+    private final MetricPartitionRepo partitionRepo;
+    private final TransactionTemplate tx;
+    private final int compactAfterDays;
+    private final int retentionDays;
+
+    public MetricCompactor(MetricChunkRepo chunkRepo, MetricPartitionRepo partitionRepo,
+                           PlatformTransactionManager txManager,
+                           @Value("${app.metrics.compact-after-days:7}") int compactAfterDays,
+                           @Value("${app.metrics.retention-days:90}") int retentionDays) {
+        this.chunkRepo = chunkRepo;
+        this.partitionRepo = partitionRepo;
+        this.tx = new TransactionTemplate(txManager);
+        this.compactAfterDays = compactAfterDays;
+        this.retentionDays = retentionDays;
+    }
+
+    /** Raw rows before this instant may live in chunks; null when compaction is disabled. */
+    public Instant horizon() {
+        if (compactAfterDays <= 0) return null;
+        return horizonDay().atStartOfDay().toInstant(ZoneOffset.UTC);
+    }
+
+    private LocalDate horizonDay() {
+        return LocalDate.now(ZoneOffset.UTC).minusDays(compactAfterDays);
+    }
+
+    @Scheduled(cron = "${app.metrics.compact-cron:0 45 0 * * *}", zone = "UTC")
+    public void compact() {
+        if (compactAfterDays <= 0) return;
+        var before = horizonDay();
+        var days = new TreeSet<LocalDate>();
+        try {
+            for (var name : partitionRepo.listPartitions()) {
+                var day = MetricPartitionRepo.dayOf(name);
+                if (day != null && day.isBefore(before)) days.add(day);
+            }
+            days.addAll(chunkRepo.defaultPartitionDays(before));
+        } catch (Exception e) {
+            log.warn("[Metrics] compaction scan failed: {}", e.getMessage());
+            return;
+        }
+        for (var day : days) {
+            try {
+                long[] stats = tx.execute(s -> compactDay(day));
+                log.info("[Metrics] compacted {}: {} rows into {} chunks", day, stats[0], stats[1]);
+            } catch (Exception e) {
+                log.warn("[Metrics] compaction of {} failed: {}", day, e.getMessage());
+            }
+        }
+        if (retentionDays > 0) {
+            try {
+                int n = chunkRepo.purge(LocalDate.now(ZoneOffset.UTC).minusDays(retentionDays));
+                if (n > 0) log.info("[Metrics] purged {} expired metric chunks", n);
+            } catch (Exception e) {
+                log.warn("[Metrics] chunk purge failed: {}", e.getMessage());
+            }
+        }
+    }
+
+    /** @return {raw rows, chunks written} */
+    private long[] compactDay(LocalDate day) {
+        partitionRepo.lockDay(day);
+        var series = new MetricSeries(4096);
+        long[] current = {-1};
+        long[] stats = {0, 0};
+        chunkRepo.rawDay(day, (assetId, ts, cpu, ram, disk) -> {
+            if (assetId != current[0]) {
+                if (current[0] >= 0) { writeChunk(current[0], day, series); stats[1]++; }
+                current[0] = assetId;
+                series.clear();
+                // existing chunk first: sortDedup keeps the last added, so a late raw row wins
+                chunkRepo.find(assetId, day).ifPresent(c -> series.decodeFrom(c.data(), c.n()));
+            }
+            series.add(ts, cpu, ram, disk);
+            stats[0]++;
+        });
+        if (current[0] >= 0) { writeChunk(current[0], day, series); stats[1]++; }
+
+        var partition = MetricPartitionRepo.partitionName(day);
+        if (partitionRepo.listPartitions().contains(partition)) partitionRepo.dropPartition(partition);
+        chunkRepo.deleteDefaultRows(day);
+        return stats;
+    }
+
+    /** @param series the existing chunk's samples followed by the day's raw rows */
+    private void writeChunk(long assetId, LocalDate day, MetricSeries series) {
+        series.sortDedup();
+        if (series.size == 0) return;
+        chunkRepo.upsert(assetId, day, Instant.ofEpochMilli(series.ts[0]),
+                Instant.ofEpochMilli(series.ts[series.size - 1]), series.size, series.encode());
+    }
+}
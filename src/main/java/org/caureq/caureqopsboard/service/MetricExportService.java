@@ -0,0 +1,188 @@
+package org.caureq.caureqopsboard.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.caureq.caureqopsboard.repo.MetricChunkRepo;
+import org.caureq.caureqopsboard.repo.MetricExportRepo;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Streams raw metric history as CSV or NDJSON straight from a JDBC cursor to the response.
+ *
+ * Heap use is one fetch batch (or one decoded day chunk) plus the writer buffer, whatever the range. The NDJSON lines
+ * have the shape accepted by POST /api/admin/metrics/import, so an export can be re-imported.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class MetricExportService {
+    private final MetricExportRepo exportRepo;
+    private final AssetIdCache assetIds;
+    private final MetricChunkRepo chunkRepo;
+    private final MetricCompactor compactor;
+    private final ObjectMapper objectMapper;
+
+    public enum Format {
+        CSV("text/csv"), NDJSON("application/x-ndjson");
+
+        public final String contentType;
+
+        Format(String contentType) { this.contentType = contentType; }
+
+        public static Format parse(String s) {
+            if (s == null || s.isBlank()) return CSV;
+            try { return valueOf(s.trim().toUpperCase(Locale.ROOT)); }
+            catch (IllegalArgumentException e) { throw new IllegalArgumentException("unsupported format: " + s); }
+        }
+    }
+
+    /**
+     * Resolve hostnames up front so unknown hosts fail with 400 before the response is committed.
+     * @return asset id -> hostname, in request order
+     */
+    public Map<Long, String> resolveHosts(Collection<String> hostnames) {
+        Map<Long, String> hosts = new LinkedHashMap<>();
+        for (var h : hostnames) {
+            if (h == null || h.isBlank()) continue;
+            hosts.put(assetIds.requireId(h.trim()), h.trim());
+        }
+        if (hosts.isEmpty()) throw new IllegalArgumentException("at least one hostname is required");
+        return hosts;
+    }
+
+    @Transactional(readOnly = true) // cursor-based fetching needs a transaction
+    public long export(Map<Long, String> hosts, Instant from, Instant to, Format format, OutputStream out) throws IOException {
+        long[] rows = {0};
+        if (format == Format.CSV) {
+            var w = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+            w.write("hostname,ts,cpu,ram,disk\n");
+            stream(hosts, from, to, (id, ts, cpu, ram, disk) -> {
+                w.write(csv(hosts.get(id)));
+                w.write(',');
+                w.write(ts.toString());
+                w.write(',');
+                w.write(Double.toString(cpu));
+                w.write(',');
+                w.write(Double.toString(ram));
+                w.write(',');
+                w.write(Double.toString(disk));
+                w.write('\n');
+                rows[0]++;
+            });
+            w.flush();
+        } else {
+            try (JsonGenerator g = objectMapper.getFactory().createGenerator(out)) {
+                g.configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+                g.setRootValueSeparator(null);
+                stream(hosts, from, to, (id, ts, cpu, ram, disk) -> {
+                    g.writeStartObject();
+                    g.writeStringField("hostname", hosts.get(id));
+                    g.writeStringField("ts", ts.toString());
+                    g.writeNumberField("cpu", cpu);
+                    g.writeNumberField("ram", ram);
+                    g.writeNumberField("disk", disk);
+                    g.writeEndObject();
+                    g.writeRaw('\n');
+                    rows[0]++;
+                });
+            }
+        }
+        log.info("[Export] {} metric rows for {} hosts ({})", rows[0], hosts.size(), format);
+        return rows[0];
+    }
+
+    /**
+     * Rows ordered by host then time. When the range reaches compacted history, each host's
+     * chunks are decoded (one chunk in memory at a time) and merged by timestamp with its raw rows,
+     * which may include late rows on compacted days; a raw row replaces a chunk sample at the same instant.
+     */
+    private void stream(Map<Long, String> hosts, Instant from, Instant to, MetricExportRepo.RowSink sink) throws IOException {
+        var horizon = compactor.horizon();
+        if (horizon == null || !from.isBefore(horizon)) {
+            exportRepo.stream(hosts.keySet(), from, to, sink);
+            return;
+        }
+        for (long id : hosts.keySet()) {
+            var chunks = new ChunkCursor(chunkRepo, id, from, to);
+            exportRepo.stream(List.of(id), from, to, (assetId, ts, cpu, ram, disk) -> {
+                long ms = ts.toEpochMilli();
+                while (chunks.hasNext() && chunks.ts() < ms) chunks.emit(assetId, sink);
+                if (chunks.hasNext() && chunks.ts() == ms) chunks.skip();
+                sink.accept(assetId, ts, cpu, ram, disk);
+            });
+            while (chunks.hasNext()) chunks.emit(id, sink);
+        }
+    }
+
+    /**
+     * Samples of consecutive chunks within [from, to]. Chunks are fetched one day at a time, only
+     * once the previous one is used up, so a single chunk is ever held (bytes and decoded).
+     */
+    private static final class ChunkCursor {
+        private final MetricChunkRepo repo;
+        private final long assetId;
+        private final Instant fromTs, toTs;
+        private final long from, to;
+        private final MetricSeries series = new MetricSeries(1024);
+        private LocalDate day;
+        private boolean done;
+        private int i;
+
+        ChunkCursor(MetricChunkRepo repo, long assetId, Instant from, Instant to) {
+            this.repo = repo;
+            this.assetId = assetId;
+            this.fromTs = from;
+            this.toTs = to;
+            this.from = from.toEpochMilli();
+            this.to = to.toEpochMilli();
+        }
+
+        boolean hasNext() {
+            while (true) {
+                while (i < series.size && series.ts[i] < from) i++;
+                if (i < series.size) return series.ts[i] <= to;
+                if (done) return false;
+                var next = repo.next(assetId, fromTs, toTs, day);
+                if (next.isEmpty()) {
+                    done = true;
+                    return false;
+                }
+                var c = next.get();
+                day = c.day();
+                series.clear();
+                series.decodeFrom(c.data(), c.n());
+                i = 0;
+            }
+        }
+
+        long ts() { return series.ts[i]; }
+
+        void skip() { i++; }
+
+        void emit(long assetId, MetricExportRepo.RowSink sink) throws IOException {
+            sink.accept(assetId, Instant.ofEpochMilli(series.ts[i]), series.cpu[i], series.ram[i], series.disk[i]);
+            i++;
+        }
+    }
+
+    private static String csv(String s) {
+        if (s.indexOf(',') < 0 && s.indexOf('"') < 0 && s.indexOf('\n') < 0) return s;
+        return '"' + s.replace("\"", "\"\"") + '"';
+    }
+}
@@ -0,0 +1,162 @@
+package org.caureq.caureqopsboard.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.caureq.caureqopsboard.api.dto.MetricImportDTO;
+import org.caureq.caureqopsboard.repo.AssetLatestMetricRepo;
+import org.caureq.caureqopsboard.repo.AssetRepo;
+import org.caureq.caureqopsboard.repo.MetricCopyWriter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Bulk import of historical samples (NDJSON) through PostgreSQL COPY.
+ *
+ * The stream is read line by line and written in chunks: asset ids are resolved once per
+ * chunk (AssetIdCache, then one bulk query), never row by row. Unknown hosts are skipped,
+ * not created. Each chunk is one transaction: COPY, asset_latest_metric upsert and the rollup
+ * dirty range commit together, and the in-memory caches (recent samples, closed windows, fleet
+ * snapshot) are only told after commit.
+ */
+@Slf4j
+@Service
+public class MetricImportService {
+    private final MetricCopyWriter copyWriter;
+    private final AssetRepo assetRepo;
+    private final AssetIdCache assetIds;
+    private final ObjectMapper objectMapper;
+    private final MetricRollupEngine rollups;
+    private final RecentMetricsBuffer recent;
+    private final MetricWindowCache windows;
+    private final AssetLatestMetricRepo latestMetrics;
+    private final FleetSnapshot fleet;
+    private final TransactionTemplate tx;
+
+    public MetricImportService(MetricCopyWriter copyWriter, AssetRepo assetRepo, AssetIdCache assetIds,
+                               ObjectMapper objectMapper, MetricRollupEngine rollups, RecentMetricsBuffer recent,
+                               MetricWindowCache windows, AssetLatestMetricRepo latestMetrics, FleetSnapshot fleet,
+                               PlatformTransactionManager txManager) {
+        this.copyWriter = copyWriter;
+        this.assetRepo = assetRepo;
+        this.assetIds = assetIds;
+        this.objectMapper = objectMapper;
+        this.rollups = rollups;
+        this.recent = recent;
+        this.windows = windows;
+        this.latestMetrics = latestMetrics;
+        this.fleet = fleet;
+        this.tx = new TransactionTemplate(txManager);
+    }
+
+    @Value("${app.ingest.import-chunk:5000}")
+    private int chunkSize;
+
+    public record ImportResult(int imported, int rejected, int unknownHost) {}
+
+    public ImportResult importNdjson(InputStream in) throws IOException {
+        int imported = 0, rejected = 0, unknown = 0;
+        List<MetricImportDTO> chunk = new ArrayList<>(chunkSize);
+        var reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isBlank()) continue;
+            MetricImportDTO d;
+            try { d = objectMapper.readValue(line, MetricImportDTO.class); }
+            catch (Exception e) { rejected++; continue; }
+            if (!isValid(d)) { rejected++; continue; }
+            chunk.add(d);
+            if (chunk.size() >= chunkSize) {
+                int n = writeChunk(chunk);
+                imported += n; unknown += chunk.size() - n;
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            int n = writeChunk(chunk);
+            imported += n; unknown += chunk.size() - n;
+        }
+        log.info("[Import] metrics imported={} rejected={} unknownHost={}", imported, rejected, unknown);
+        return new ImportResult(imported, rejected, unknown);
+    }
+
+    private int writeChunk(List<MetricImportDTO> chunk) {
+        Integer n = tx.execute(s -> writeChunkTx(chunk));
+        return n == null ? 0 : n;
+    }
+
+    private int writeChunkTx(List<MetricImportDTO> chunk) {
+        var ids = resolveExisting(chunk.stream().map(d -> AssetIdCache.key(d.hostname())).toList());
+        List<MetricCopyWriter.Row> rows = new ArrayList<>(chunk.size());
+        for (var d : chunk) {
+            var id = ids.get(AssetIdCache.key(d.hostname()));
+            if (id == null) continue;
+            rows.add(new MetricCopyWriter.Row(id, d.cpu(), d.ram(), d.disk(), servicesJson(d.services()), d.ts()));
+        }
+        int n = copyWriter.write(rows);
+        latestMetrics.upsertNewest(rows.stream().map(r ->
+                new AssetLatestMetricRepo.Latest(r.assetId(), r.ts(), r.cpu(), r.ram(), r.disk())).toList());
+        markDirty(rows);
+        AfterCommit.run(() -> ids.values().forEach(id -> { // history written behind the buffers
+            recent.evict(id);
+            windows.invalidate(id);
+        }));
+        ids.values().forEach(fleet::reload); // queued until commit
+        return n;
+    }
+
+    /** Imported history lands behind the rollup engine's lookback: queue it for re-aggregation. */
+    private void markDirty(List<MetricCopyWriter.Row> rows) {
+        if (rows.isEmpty()) return;
+        var min = rows.get(0).ts();
+        var max = min;
+        Set<Long> assets = new HashSet<>();
+        for (var r : rows) {
+            if (r.ts().isBefore(min)) min = r.ts();
+            if (r.ts().isAfter(max)) max = r.ts();
+            assets.add(r.assetId());
+        }
+        rollups.markDirty(min, max, assets);
+    }
+
+    /** key -> id for hosts that exist; cache first, then a single query for the misses. */
+    private Map<String, Long> resolveExisting(Collection<String> keys) {
+        Map<String, Long> ids = new HashMap<>();
+        Set<String> misses = new HashSet<>();
+        for (var k : keys) {
+            if (ids.containsKey(k) || misses.contains(k)) continue;
+            var id = assetIds.get(k);
+            if (id != null) ids.put(k, id); else misses.add(k);
+        }
+        if (!misses.isEmpty()) {
+            for (var a : assetRepo.findByHostnameLowerIn(misses)) {
+                var k = AssetIdCache.key(a.getHostname());
+                ids.put(k, a.getId());
+                assetIds.put(k, a.getId());
+            }
+        }
+        return ids;
+    }
+
+    private boolean isValid(MetricImportDTO d) {
+        return d != null && d.hostname() != null && !d.hostname().isBlank() && d.ts() != null
+                && inPct(d.cpu()) && inPct(d.ram()) && inPct(d.disk());
+    }
+
+    /** A missing value is rejected, not imported as 0 %. */
+    private static boolean inPct(Double v) { return v != null && v >= 0.0 && v <= 100.0; }
+
+    private String servicesJson(Map<String, String> services) {
+        if (services == null) return null;
+        try { return objectMapper.writeValueAsString(services); }
+        catch (Exception e) { return String.valueOf(services); }
+    }
+}
@@ -0,0 +1,72 @@
+package org.caureq.caureqopsboard.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.caureq.caureqopsboard.repo.MetricPartitionRepo;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.HashSet;
+
+/**
+ * Maintains the daily partitions of metrics.
+ *
+ * Responsibilities
+ * - Pre-create partitions for today + app.metrics.partition-premake-days.
+ * - Drop whole partitions older than app.metrics.retention-days (no bulk DELETE, no bloat).
+ *
+ * Runs at startup and daily (app.metrics.partition-cron, UTC). retention-days <= 0 keeps everything.
+ */
+@Slf4j
+@Component
+public class MetricPartitionManager {
+    private final MetricPartitionRepo repo;
+    private final int premakeDays;
+    private final int retentionDays;
+
+    public MetricPartitionManager(MetricPartitionRepo repo,
+                                  @Value("${app.metrics.partition-premake-days:7}") int premakeDays,
+                                  @Value("${app.metrics.retention-days:90}") int retentionDays) {
+        this.repo = repo;
+        this.premakeDays = Math.max(1, premakeDays);
+        this.retentionDays = retentionDays;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        maintain();
+    }
+
+    @Scheduled(cron = "${app.metrics.partition-cron:0 15 0 * * *}", zone = "UTC")
+    public void maintain() {
+        try {
+            var today = LocalDate.now(ZoneOffset.UTC);
+            var existing = new HashSet<>(repo.listPartitions());
+            int created = 0, dropped = 0;
+            for (int i = 0; i <= premakeDays; i++) {
+                var day = today.plusDays(i);
+                if (existing.contains(MetricPartitionRepo.partitionName(day))) continue;
+                repo.createPartition(day);
+                created++;
+            }
+            if (retentionDays > 0) {
+                var cutoff = today.minusDays(retentionDays);
+                for (var name : existing) {
+                    var day = MetricPartitionRepo.dayOf(name);
+                    if (day == null || !day.isBefore(cutoff)) continue;
+                    repo.dropPartition(name);
+                    dropped++;
+                }
+                repo.purgeDefault(cutoff.atStartOfDay().atOffset(ZoneOffset.UTC));
+            }
+            log.info("[Metrics] partitions maintained created={} dropped={} retentionDays={}",
+                    created, dropped, retentionDays);
+        } catch (Exception e) {
+            log.warn("[Metrics] partition maintenance failed: {}", e.getMessage());
+        }
+    }
+}
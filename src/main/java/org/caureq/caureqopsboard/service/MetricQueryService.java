@@ -2,15 +2,21 @@ package org.caureq.caureqopsboard.service;
 
 import lombok.RequiredArgsConstructor;
 import org.caureq.caureqopsboard.api.dto.MetricPointDTO;
+import org.caureq.caureqopsboard.api.dto.MetricSummaryBucketDTO;
 import org.caureq.caureqopsboard.api.dto.MetricSummaryDTO;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.caureq.caureqopsboard.domain.Asset;
 import org.caureq.caureqopsboard.repo.AssetRepo;
+import org.caureq.caureqopsboard.repo.MetricChunkRepo;
+import org.caureq.caureqopsboard.repo.MetricPointRepo;
 import org.caureq.caureqopsboard.repo.MetricRepo;
+import org.caureq.caureqopsboard.repo.MetricRollupRepo;
+import org.caureq.caureqopsboard.repo.MetricRollupRepo.Resolution;
+import org.caureq.caureqopsboard.repo.MetricStatsRepo;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.time.*;
-import java.util.DoubleSummaryStatistics;
 import java.util.List;
 
 @Service
@@ -18,42 +24,279 @@ import java.util.List;
 public class MetricQueryService {
     private final AssetRepo assetRepo;
     private final MetricRepo metricRepo;
+    private final ServiceStateService serviceStates;
+    private final MetricRollupRepo rollupRepo;
+    private final MetricRollupEngine rollups;
+    private final MetricStatsRepo statsRepo;
+    private final RecentMetricsBuffer recent;
+    private final AssetIdCache assetIds;
+    private final MetricCompactor compactor;
+    private final MetricChunkRepo chunkRepo;
+    private final MetricPointRepo pointRepo;
     private final ObjectMapper om = new ObjectMapper();
 
+    /** Max points a range query should return before switching to a coarser resolution. */
+    @Value("${app.metrics.point-budget:1500}")
+    private int pointBudget;
+    /** Nominal agent reporting interval, used to estimate raw point counts. */
+    @Value("${app.metrics.raw-interval-seconds:30}")
+    private int rawIntervalSeconds;
+    @Value("${app.metrics.retention-days:90}")
+    private int rawRetentionDays;
+
+    /** Newest points first, served from RecentMetricsBuffer (no DB round-trip once warmed). */
     public List<MetricPointDTO> latest(String hostname, int limit) {
-        var asset = findAsset(hostname);
-        var list = metricRepo.findTop200ByAssetOrderByTsDesc(asset);
-        var sub = list.stream().limit(Math.max(1, Math.min(limit, 200))).toList();
-        return sub.stream().map(m ->
-                new MetricPointDTO(m.getTs().atOffset(ZoneOffset.UTC), m.getCpu(), m.getRam(), m.getDisk())
-        ).toList();
+        return latestPage(hostname, limit, null).items();
     }
 
+    /** Points newest first; nextCursor (keyset on ts, id) is null when history is exhausted. */
+    public record PointPage(List<MetricPointDTO> items, String nextCursor) {}
+
+    /**
+     * Scroll back through raw history, newest first. The first page comes from RecentMetricsBuffer;
+     * later pages are keyset queries on (ts, id) (idx_metric_asset_ts), continuing into compacted
+     * chunks once raw rows run out. Each page costs the same regardless of depth.
+     * @param cursor nextCursor of the previous page, or null for the newest points
+     */
+    public PointPage latestPage(String hostname, int limit, String cursor) {
+        long id = assetIds.requireId(hostname);
+        if (cursor == null || cursor.isBlank()) {
+            int lim = Math.max(1, Math.min(limit, Math.min(200, recent.capacity())));
+            List<MetricPointDTO> out = new java.util.ArrayList<>(lim);
+            long[] oldest = {0};
+            recent.latest(id, lim, (ts, cpu, ram, disk) -> {
+                out.add(new MetricPointDTO(Instant.ofEpochMilli(ts).atOffset(ZoneOffset.UTC), cpu, ram, disk));
+                oldest[0] = ts;
+            });
+            // ring samples carry no row id: the next page starts strictly before the oldest ts
+            return new PointPage(out, out.size() == lim ? pointCursor(Instant.ofEpochMilli(oldest[0]), null) : null);
+        }
+        var c = PageCursor.decode(cursor, "metrics", 2);
+        Instant before;
+        Long beforeId;
+        try {
+            before = Instant.parse(c[0]);
+            beforeId = c[1].isEmpty() ? null : Long.valueOf(c[1]);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("invalid cursor");
+        }
+        int lim = Math.max(1, Math.min(limit, 1000));
+        List<Sample> samples = new java.util.ArrayList<>(lim);
+        pointRepo.before(id, before, beforeId, lim, (rowId, ts, cpu, ram, disk) ->
+                samples.add(new Sample(ts, rowId, cpu, ram, disk)));
+        var horizon = compactor.horizon();
+        if (horizon != null && (samples.size() < lim || samples.get(samples.size() - 1).ts().isBefore(horizon))) {
+            coldBefore(id, before.toEpochMilli(), lim, samples);
+            samples.sort(java.util.Comparator.comparing(Sample::ts).reversed());
+        }
+        var page = samples.size() > lim ? samples.subList(0, lim) : samples;
+        var out = page.stream().map(x -> new MetricPointDTO(
+                x.ts().atOffset(ZoneOffset.UTC), x.cpu(), x.ram(), x.disk())).toList();
+        String next = null;
+        if (page.size() == lim) {
+            var last = page.get(page.size() - 1);
+            next = pointCursor(last.ts(), last.id());
+        }
+        return new PointPage(out, next);
+    }
+
+    /** id == null for samples decoded from chunks. */
+    private record Sample(Instant ts, Long id, double cpu, double ram, double disk) {}
+
+    /** Adds up to limit chunk samples older than beforeMillis, newest chunks first. */
+    private void coldBefore(long assetId, long beforeMillis, int limit, List<Sample> out) {
+        var series = new MetricSeries(1024);
+        int added = 0;
+        java.time.LocalDate day = null;
+        while (added < limit) {
+            var chunk = chunkRepo.previous(assetId, Instant.ofEpochMilli(beforeMillis), day);
+            if (chunk.isEmpty()) break;
+            day = chunk.get().day();
+            series.clear();
+            series.decodeFrom(chunk.get().data(), chunk.get().n());
+            for (int i = series.size - 1; i >= 0 && added < limit; i--) {
+                if (series.ts[i] >= beforeMillis) continue;
+                out.add(new Sample(Instant.ofEpochMilli(series.ts[i]), null, series.cpu[i], series.ram[i], series.disk[i]));
+                added++;
+            }
+        }
+    }
+
+    private static String pointCursor(Instant ts, Long id) {
+        return PageCursor.encode("metrics", ts.toString(), id == null ? null : id.toString());
+    }
+
+    /**
+     * Points in [from, to] at the finest resolution that fits app.metrics.point-budget and is
+     * still retained for the whole range: raw rows, else 1m / 15m / 1h rollups (bucket averages).
+     */
     public List<MetricPointDTO> between(String hostname, Instant from, Instant to) {
-        var asset = findAsset(hostname);
-        var list = metricRepo.findByAssetAndTsBetweenOrderByTsAsc(asset, from, to);
-        return list.stream().map(m ->
-                new MetricPointDTO(m.getTs().atOffset(ZoneOffset.UTC), m.getCpu(), m.getRam(), m.getDisk())
+        return series(assetIds.requireId(hostname), from, to, pointBudget, false);
+    }
+
+    /**
+     * Same as between(), then reduced to at most maxPoints with LTTB so spikes stay visible.
+     * The source resolution is picked with the larger of maxPoints and the point budget; rollup
+     * buckets are fed to LTTB by their max (bucket averages would already flatten the spikes).
+     * @param maxPoints clamped to [3, 10 x point-budget] (see clampMaxPoints)
+     */
+    public List<MetricPointDTO> between(String hostname, Instant from, Instant to, int maxPoints) {
+        int target = clampMaxPoints(maxPoints);
+        var pts = series(assetIds.requireId(hostname), from, to, Math.max(target, pointBudget), true);
+        return Lttb.downsample(pts, target);
+    }
+
+    /** maxPoints actually honoured: at least 3, at most 10 x app.metrics.point-budget. */
+    public int clampMaxPoints(int maxPoints) {
+        return Math.max(3, Math.min(maxPoints, 10 * Math.max(1, pointBudget)));
+    }
+
+    /**
+     * Last instant whose samples can change between() for this range: `to` for raw rows, else the
+     * end of the rollup bucket containing `to` (series() includes that partial bucket).
+     * @param maxPoints as passed to between(), or null
+     */
+    public Instant dataEnd(Instant from, Instant to, Integer maxPoints) {
+        int budget = maxPoints == null ? pointBudget : Math.max(clampMaxPoints(maxPoints), pointBudget);
+        var res = pickResolution(from, to, budget);
+        return res == null ? to : res.floor(to).plus(res.step);
+    }
+
+    /** @param peaks rollup buckets as cpu/ram/disk max instead of averages */
+    private List<MetricPointDTO> series(long assetId, Instant from, Instant to, int budget, boolean peaks) {
+        var res = pickResolution(from, to, budget);
+        if (res == null) return raw(assetId, from, to);
+        return rollupRepo.series(res, assetId, from, to).stream().map(p -> peaks
+                ? new MetricPointDTO(p.bucket().atOffset(ZoneOffset.UTC), p.cpuMax(), p.ramMax(), p.diskMax())
+                : new MetricPointDTO(p.bucket().atOffset(ZoneOffset.UTC), p.cpuAvg(), p.ramAvg(), p.diskAvg())
         ).toList();
     }
 
-    public MetricSummaryDTO summary(String hostname, Instant from, Instant to) {
-        var pts = between(hostname, from, to);
-        var cpuStats = pts.stream().mapToDouble(MetricPointDTO::cpu).summaryStatistics();
-        var ramStats = pts.stream().mapToDouble(MetricPointDTO::ram).summaryStatistics();
-        var dskStats = pts.stream().mapToDouble(MetricPointDTO::disk).summaryStatistics();
+    /** null = raw rows. */
+    Resolution pickResolution(Instant from, Instant to, int budget) {
+        var now = Instant.now();
+        long span = Math.max(1, Duration.between(from, to).getSeconds());
+        boolean rawCovers = rawRetentionDays <= 0 || !from.isBefore(now.minus(Duration.ofDays(rawRetentionDays)));
+        if (rawCovers && span / Math.max(1, rawIntervalSeconds) <= budget) return null;
+        Resolution fallback = null;
+        for (var res : Resolution.values()) {
+            var horizon = rollups.horizon(res, now);
+            if (horizon != null && from.isBefore(horizon)) continue;
+            fallback = res;
+            if (span / res.step.getSeconds() <= budget) return res;
+        }
+        return fallback != null ? fallback : Resolution.H1;
+    }
+
+    /** Raw points (ts/cpu/ram/disk projection), including those already compacted into cold chunks. */
+    private List<MetricPointDTO> raw(long assetId, Instant from, Instant to) {
+        var cold = cold(assetId, from, to);
+        var series = cold != null ? cold : new MetricSeries(256);
+        boolean merge = series.size > 0;
+        pointRepo.range(assetId, from, to, series::add);
+        if (merge) series.sortDedup(); // late replays may interleave with chunk samples
+        List<MetricPointDTO> out = new java.util.ArrayList<>(series.size);
+        for (int i = 0; i < series.size; i++) {
+            out.add(new MetricPointDTO(Instant.ofEpochMilli(series.ts[i]).atOffset(ZoneOffset.UTC),
+                    series.cpu[i], series.ram[i], series.disk[i]));
+        }
+        return out;
+    }
+
+    /** Decoded chunk samples in [from, to], or null when the range cannot reach compacted days. */
+    private MetricSeries cold(long assetId, Instant from, Instant to) {
+        var horizon = compactor.horizon();
+        if (horizon == null || !from.isBefore(horizon)) return null;
+        var series = new MetricSeries(1024);
+        long f = from.toEpochMilli(), t = to.toEpochMilli();
+        for (var c : chunkRepo.overlapping(assetId, from, to)) {
+            GorillaCodec.decode(c.data(), c.n(), (ts, cpu, ram, disk) -> {
+                if (ts >= f && ts <= t) series.add(ts, cpu, ram, disk);
+            });
+        }
+        return series;
+    }
+
+    /** Max buckets a stepped summary may return. */
+    private static final int MAX_SUMMARY_BUCKETS = 2000;
+
+    /**
+     * Exact avg/max/p50/p95/p99 over raw rows in [from, to], computed by one aggregate query.
+     * A range reaching compacted history (before MetricCompactor.horizon()) is summarised from the
+     * finest retained rollup in one query as well: avg/max/points exact for the buckets touching
+     * the range, percentiles over bucket averages (see MetricStatsRepo). Nothing is decoded on the heap.
+     * @param step optional bucket width (>= 1 minute); adds per-bucket avg/max/p95
+     */
+    public MetricSummaryDTO summary(String hostname, Instant from, Instant to, Duration step) {
+        long assetId = assetIds.requireId(hostname);
+        List<MetricSummaryBucketDTO> buckets = null;
+        if (step != null) {
+            if (step.compareTo(Duration.ofMinutes(1)) < 0) throw new IllegalArgumentException("step must be at least 1 minute");
+            if (Duration.between(from, to).dividedBy(step) > MAX_SUMMARY_BUCKETS) {
+                throw new IllegalArgumentException("step too small: more than " + MAX_SUMMARY_BUCKETS + " buckets");
+            }
+        }
+        var horizon = compactor.horizon();
+        var res = horizon != null && from.isBefore(horizon) ? summaryResolution(from) : null;
+        if (step != null) {
+            var rows = res == null ? statsRepo.buckets(assetId, from, to, step) : statsRepo.buckets(res, assetId, from, to, step);
+            buckets = rows.stream().map(b -> new MetricSummaryBucketDTO(
+                    b.ts().atOffset(ZoneOffset.UTC), b.points(),
+                    b.cpuAvg(), b.cpuMax(), b.cpuP95(),
+                    b.ramAvg(), b.ramMax(), b.ramP95(),
+                    b.diskAvg(), b.diskMax(), b.diskP95())).toList();
+        }
+        if (buckets == null && res == null) {
+            var w = recent.stats(assetId, from.toEpochMilli(), to.toEpochMilli());
+            if (w != null) return fromWindow(from, to, w); // short window fully held in memory
+        }
+        var s = res == null ? statsRepo.summary(assetId, from, to) : statsRepo.summary(res, assetId, from, to);
+        return new MetricSummaryDTO(
+                from.atOffset(ZoneOffset.UTC), to.atOffset(ZoneOffset.UTC),
+                s.cpu().avg(), s.cpu().max(),
+                s.ram().avg(), s.ram().max(),
+                s.disk().avg(), s.disk().max(),
+                s.points(),
+                s.cpu().p50(), s.cpu().p95(), s.cpu().p99(),
+                s.ram().p50(), s.ram().p95(), s.ram().p99(),
+                s.disk().p50(), s.disk().p95(), s.disk().p99(),
+                buckets
+        );
+    }
+
+    /**
+     * Finest rollup still retained over the whole range (the summary source once raw rows may be
+     * compacted into chunks); H1 when none is.
+     */
+    private Resolution summaryResolution(Instant from) {
+        var now = Instant.now();
+        for (var res : Resolution.values()) {
+            var horizon = rollups.horizon(res, now);
+            if (horizon == null || !from.isBefore(horizon)) return res;
+        }
+        return Resolution.H1;
+    }
+
+    private static MetricSummaryDTO fromWindow(Instant from, Instant to, RecentMetricsBuffer.WindowStats w) {
+        var c = w.cpu(); var r = w.ram(); var d = w.disk();
         return new MetricSummaryDTO(
                 from.atOffset(ZoneOffset.UTC), to.atOffset(ZoneOffset.UTC),
-                safeAvg(cpuStats), safeMax(cpuStats),
-                safeAvg(ramStats), safeMax(ramStats),
-                safeAvg(dskStats), safeMax(dskStats),
-                pts.size()
+                c == null ? null : c.avg(), c == null ? null : c.max(),
+                r == null ? null : r.avg(), r == null ? null : r.max(),
+                d == null ? null : d.avg(), d == null ? null : d.max(),
+                w.points(),
+                c == null ? null : c.p50(), c == null ? null : c.p95(), c == null ? null : c.p99(),
+                r == null ? null : r.p50(), r == null ? null : r.p95(), r == null ? null : r.p99(),
+                d == null ? null : d.p50(), d == null ? null : d.p95(), d == null ? null : d.p99(),
+                null
         );
     }
 
+    /** Current service states from the normalised store; falls back to the legacy metrics column. */
     public java.util.Map<String, String> latestServices(String hostname) {
         var asset = findAsset(hostname);
-        var m = metricRepo.findTopByAssetOrderByTsDesc(asset);
+        if (serviceStates.hasStates(asset.getId())) return serviceStates.current(asset.getId());
+        var m = metricRepo.findTopByAssetAndServicesIsNotNullOrderByTsDesc(asset);
         if (m == null || m.getServices() == null || m.getServices().isBlank()) return java.util.Map.of();
         String s = m.getServices().trim();
         // Try JSON first
@@ -81,6 +324,4 @@ public class MetricQueryService {
                 .orElseThrow(() -> new IllegalArgumentException("asset not found: " + hostname));
     }
 
-    private Double safeAvg(DoubleSummaryStatistics s) { return s.getCount() == 0 ? null : s.getAverage(); }
-    private Double safeMax(DoubleSummaryStatistics s) { return s.getCount() == 0 ? null : s.getMax(); }
 }
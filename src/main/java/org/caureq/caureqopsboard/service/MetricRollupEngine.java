@@ -0,0 +1,200 @@
+package org.caureq.caureqopsboard.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.caureq.caureqopsboard.repo.MetricChunkRepo;
+import org.caureq.caureqopsboard.repo.MetricRollupRepo;
+import org.caureq.caureqopsboard.repo.MetricRollupRepo.Range;
+import org.caureq.caureqopsboard.repo.MetricRollupRepo.Resolution;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Background downsampling of raw metrics into the 1m / 15m / 1h rollup tables.
+ *
+ * Responsibilities
+ * - Every app.metrics.rollup-ms, recompute the buckets covering the last
+ *   app.metrics.rollup-lookback-seconds (must exceed the ingest clock-skew allowance),
+ *   then cascade 1m -> 15m -> 1h over the same range.
+ * - Re-aggregate ranges queued by late writers (replay, import) via markDirty(). Days already
+ *   compacted into metric_chunk (MetricCompactor) have no complete raw rows left: their buckets
+ *   are recomputed per asset from the decoded chunk merged with the day's late raw rows.
+ *   Once a range is done, the affected assets' closed windows are invalidated again
+ *   (MetricWindowCache): results cached between the write and this refresh still showed the old buckets.
+ * - Purge rollup rows past their own retention, which is much longer than the raw one.
+ *
+ * Refreshes are idempotent upserts, so overlapping runs or instances are harmless.
+ */
+@Slf4j
+@Component
+public class MetricRollupEngine {
+    /** Dirty ranges are re-aggregated in slices so a backfill never becomes one huge statement. */
+    private static final Duration SLICE = Duration.ofDays(1);
+
+    private final MetricRollupRepo repo;
+    private final MetricCompactor compactor;
+    private final MetricChunkRepo chunkRepo;
+    private final MetricWindowCache windows;
+    /** Chunk and late raw rows of a compacted day are read from one snapshot (compaction moves rows). */
+    private final TransactionTemplate snapshotTx;
+    private final Duration lookback;
+    private final Map<Resolution, Integer> retentionDays = new EnumMap<>(Resolution.class);
+
+    public MetricRollupEngine(MetricRollupRepo repo, MetricCompactor compactor, MetricChunkRepo chunkRepo,
+                              MetricWindowCache windows, PlatformTransactionManager txManager,
+                              @Value("${app.metrics.rollup-lookback-seconds:600}") long lookbackSeconds,
+                              @Value("${app.metrics.rollup-retention-days.m1:30}") int m1Days,
+                              @Value("${app.metrics.rollup-retention-days.m15:400}") int m15Days,
+                              @Value("${app.metrics.rollup-retention-days.h1:1825}") int h1Days) {
+        this.repo = repo;
+        this.compactor = compactor;
+        this.chunkRepo = chunkRepo;
+        this.windows = windows;
+        this.snapshotTx = new TransactionTemplate(txManager);
+        this.snapshotTx.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.lookback = Duration.ofSeconds(Math.max(60, lookbackSeconds));
+        retentionDays.put(Resolution.M1, m1Days);
+        retentionDays.put(Resolution.M15, m15Days);
+        retentionDays.put(Resolution.H1, h1Days);
+    }
+
+    /** Oldest instant a resolution still covers, or null when it is kept forever. */
+    public Instant horizon(Resolution res, Instant now) {
+        int days = retentionDays.get(res);
+        return days <= 0 ? null : now.minus(Duration.ofDays(days));
+    }
+
+    /**
+     * Queue raw rows written in [from, to] outside the live path for re-aggregation.
+     * @param assetIds assets written (limits the work on compacted days), or null when unknown
+     */
+    public void markDirty(Instant from, Instant to, Collection<Long> assetIds) {
+        repo.markDirty(from, to, assetIds);
+    }
+
+    @Scheduled(fixedDelayString = "${app.metrics.rollup-ms:60000}", initialDelayString = "${app.metrics.rollup-ms:60000}")
+    public void refresh() {
+        var now = Instant.now();
+        try {
+            refresh(now.minus(lookback), now);
+        } catch (Exception e) {
+            log.warn("[Metrics] rollup refresh failed: {}", e.getMessage());
+        }
+        List<Range> dirty;
+        try {
+            dirty = repo.dirty();
+        } catch (Exception e) {
+            log.warn("[Metrics] reading rollup dirty ranges failed: {}", e.getMessage());
+            return;
+        }
+        int done = 0;
+        var compacted = compactor.horizon();
+        for (var r : dirty) {
+            var start = r.from();
+            try {
+                if (compacted != null && start.isBefore(compacted)) {
+                    // raw rows of compacted days are mostly gone: rebuild those days from their chunks
+                    var horizonDay = LocalDate.ofInstant(compacted, ZoneOffset.UTC);
+                    for (var day = LocalDate.ofInstant(start, ZoneOffset.UTC);
+                         day.isBefore(horizonDay) && !dayStart(day).isAfter(r.to()); day = day.plusDays(1)) {
+                        var assets = r.assetIds() != null ? r.assetIds() : chunkRepo.assetsOfDay(day);
+                        for (var id : assets) refreshCompacted(id, day);
+                        if (dayStart(day.plusDays(1)).isBefore(r.to())) repo.advanceDirty(r.id(), dayStart(day.plusDays(1)));
+                    }
+                    start = compacted;
+                }
+                for (var f = start; !f.isAfter(r.to()); f = f.plus(SLICE)) {
+                    var t = f.plus(SLICE).isBefore(r.to()) ? f.plus(SLICE) : r.to();
+                    refresh(f, t);
+                    if (t.isBefore(r.to())) repo.advanceDirty(r.id(), t); // resume here after a crash
+                }
+                repo.clearDirty(r.id());
+                if (r.assetIds() != null) r.assetIds().forEach(windows::invalidate);
+                else windows.invalidateAll(); // range queued without asset ids
+                done++;
+            } catch (Exception e) {
+                log.warn("[Metrics] rollup of dirty range {}..{} failed: {}", r.from(), r.to(), e.getMessage());
+            }
+        }
+        if (done > 0) log.info("[Metrics] re-aggregated {} dirty ranges", done);
+    }
+
+    /** Recompute every level of one asset's compacted day from its chunk merged with late raw rows. */
+    private void refreshCompacted(long assetId, LocalDate day) {
+        var now = Instant.now();
+        snapshotTx.executeWithoutResult(s -> {
+            var series = new MetricSeries(4096);
+            chunkRepo.find(assetId, day).ifPresent(c -> series.decodeFrom(c.data(), c.n()));
+            chunkRepo.rawDay(assetId, day, (id, ts, cpu, ram, disk) -> series.add(ts, cpu, ram, disk));
+            series.sortDedup();
+            for (var res : Resolution.values()) {
+                var horizon = horizon(res, now);
+                if (horizon != null && dayStart(day.plusDays(1)).isBefore(horizon)) continue; // purged anyway
+                repo.upsert(res, assetId, buckets(series, res));
+            }
+        });
+    }
+
+    /** count/sum/min/max per bucket of a sorted series (buckets aligned like date_bin on 2000-01-01). */
+    static List<MetricRollupRepo.Bucket> buckets(MetricSeries s, Resolution res) {
+        List<MetricRollupRepo.Bucket> out = new ArrayList<>();
+        long step = res.step.toMillis();
+        int i = 0;
+        while (i < s.size) {
+            long b = Math.floorDiv(s.ts[i], step) * step;
+            int j = i;
+            double cs = 0, cmin = Double.POSITIVE_INFINITY, cmax = Double.NEGATIVE_INFINITY;
+            double rs = 0, rmin = Double.POSITIVE_INFINITY, rmax = Double.NEGATIVE_INFINITY;
+            double ds = 0, dmin = Double.POSITIVE_INFINITY, dmax = Double.NEGATIVE_INFINITY;
+            for (; j < s.size && s.ts[j] < b + step; j++) {
+                cs += s.cpu[j]; cmin = Math.min(cmin, s.cpu[j]); cmax = Math.max(cmax, s.cpu[j]);
+                rs += s.ram[j]; rmin = Math.min(rmin, s.ram[j]); rmax = Math.max(rmax, s.ram[j]);
+                ds += s.disk[j]; dmin = Math.min(dmin, s.disk[j]); dmax = Math.max(dmax, s.disk[j]);
+            }
+            out.add(new MetricRollupRepo.Bucket(Instant.ofEpochMilli(b), j - i,
+                    cs, cmin, cmax, rs, rmin, rmax, ds, dmin, dmax));
+            i = j;
+        }
+        return out;
+    }
+
+    private static Instant dayStart(LocalDate day) {
+        return day.atStartOfDay().toInstant(ZoneOffset.UTC);
+    }
+
+    /** Recompute all levels for the buckets touching [from, to]. */
+    private void refresh(Instant from, Instant to) {
+        for (var res : Resolution.values()) {
+            int n = repo.refresh(res, res.floor(from), res.floor(to).plus(res.step));
+            log.debug("rollup {} {}..{}: {} buckets", res, from, to, n);
+        }
+    }
+
+    @Scheduled(cron = "${app.metrics.partition-cron:0 15 0 * * *}", zone = "UTC")
+    public void purge() {
+        var now = Instant.now();
+        for (var res : Resolution.values()) {
+            var horizon = horizon(res, now);
+            if (horizon == null) continue;
+            try {
+                int n = repo.purge(res, horizon);
+                if (n > 0) log.info("[Metrics] purged {} {} rollup rows", n, res);
+            } catch (Exception e) {
+                log.warn("[Metrics] rollup purge {} failed: {}", res, e.getMessage());
+            }
+        }
+    }
+}
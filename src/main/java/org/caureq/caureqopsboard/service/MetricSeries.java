@@ -0,0 +1,59 @@
+package org.caureq.caureqopsboard.service;
+
+import java.util.Arrays;
+
+/**
+ * Growable columnar buffer of samples (ts millis + cpu/ram/disk) in primitive arrays,
+ * used wherever cold chunks are decoded or re-encoded.
+ */
+final class MetricSeries {
+    long[] ts;
+    double[] cpu, ram, disk;
+    int size;
+
+    MetricSeries(int capacity) {
+        int c = Math.max(16, capacity);
+        ts = new long[c];
+        cpu = new double[c];
+        ram = new double[c];
+        disk = new double[c];
+    }
+
+    void add(long t, double c, double r, double d) {
+        if (size == ts.length) {
+            int n = size * 2;
+            ts = Arrays.copyOf(ts, n);
+            cpu = Arrays.copyOf(cpu, n);
+            ram = Arrays.copyOf(ram, n);
+            disk = Arrays.copyOf(disk, n);
+        }
+        ts[size] = t; cpu[size] = c; ram[size] = r; disk[size] = d;
+        size++;
+    }
+
+    void clear() { size = 0; }
+
+    /** Sort by timestamp and drop exact duplicate timestamps (keeps the last one added). */
+    void sortDedup() {
+        boolean sorted = true;
+        for (int i = 1; i < size && sorted; i++) sorted = ts[i - 1] < ts[i];
+        if (sorted) return;
+        Integer[] idx = new Integer[size];
+        for (int i = 0; i < size; i++) idx[i] = i;
+        Arrays.sort(idx, (a, b) -> ts[a] != ts[b] ? Long.compare(ts[a], ts[b]) : Integer.compare(a, b));
+        long[] t2 = new long[ts.length];
+        double[] c2 = new double[ts.length], r2 = new double[ts.length], d2 = new double[ts.length];
+        int n = 0;
+        for (int k = 0; k < size; k++) {
+            int i = idx[k];
+            if (n > 0 && t2[n - 1] == ts[i]) n--; // same instant: later write wins
+            t2[n] = ts[i]; c2[n] = cpu[i]; r2[n] = ram[i]; d2[n] = disk[i];
+            n++;
+        }
+        ts = t2; cpu = c2; ram = r2; disk = d2; size = n;
+    }
+
+    byte[] encode() { return GorillaCodec.encode(ts, cpu, ram, disk, size); }
+
+    void decodeFrom(byte[] data, int n) { GorillaCodec.decode(data, n, this::add); }
+}
@@ -0,0 +1,107 @@
+package org.caureq.caureqopsboard.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * ETags and a bounded result cache for closed metric windows (range and summary queries).
+ *
+ * Responsibilities
+ * - A window is closed once the end of its data is older than app.metrics.window-settle-seconds:
+ *   live samples (clock-skew allowance) and rollup refreshes no longer reach it. The end of the
+ *   data is `to` for raw rows but the end of the bucket containing `to` for rollups, since that
+ *   partial bucket keeps changing (see MetricQueryService.dataEnd).
+ * - The ETag covers asset id, the asset's history epoch, the UTC day and the query variant.
+ *   Late writers (replay, import) call invalidate() to bump the epoch, and MetricRollupEngine
+ *   bumps it again once their dirty range is re-aggregated; the day rolls ETags
+ *   daily because retention horizons (and so the chosen resolution) move with time.
+ * - Cache results by the same key, least recently used evicted past app.metrics.window-cache-size.
+ *
+ * Epochs are per instance: a replay handled by another instance is only seen the next day.
+ */
+@Component
+public class MetricWindowCache {
+    private final Duration settle;
+    private final int maxSize;
+    private final Map<Long, Long> epochs = new ConcurrentHashMap<>();
+    private final AtomicLong globalEpoch = new AtomicLong();
+    private final Map<String, Object> lru;
+    private final Counter hits;
+    private final Counter misses;
+
+    public MetricWindowCache(MeterRegistry registry,
+                             @Value("${app.metrics.window-settle-seconds:900}") long settleSeconds,
+                             @Value("${app.metrics.window-cache-size:256}") int maxSize) {
+        this.settle = Duration.ofSeconds(Math.max(0, settleSeconds));
+        this.maxSize = Math.max(0, maxSize);
+        this.lru = new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Object> eldest) {
+                return size() > MetricWindowCache.this.maxSize;
+            }
+        };
+        Gauge.builder("metrics.window-cache.size", this, MetricWindowCache::size).register(registry);
+        this.hits = Counter.builder("metrics.window-cache.hits").register(registry);
+        this.misses = Counter.builder("metrics.window-cache.misses").register(registry);
+    }
+
+    /**
+     * Cache key of a closed window, or null while the window may still change.
+     * @param dataEnd last instant whose samples can contribute to the result (>= to)
+     */
+    public String key(long assetId, Instant from, Instant to, Instant dataEnd, String variant) {
+        var now = Instant.now();
+        if (dataEnd.isAfter(now.minus(settle))) return null;
+        return assetId + ":" + globalEpoch.get() + "." + epochs.getOrDefault(assetId, 0L) + ":" + LocalDate.now(ZoneOffset.UTC)
+                + ":" + variant + ":" + from.toEpochMilli() + ":" + to.toEpochMilli();
+    }
+
+    /** Strong ETag (quoted) for a key. */
+    public static String etag(String key) {
+        return '"' + UUID.nameUUIDFromBytes(key.getBytes(StandardCharsets.UTF_8)).toString() + '"';
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T get(String key, Supplier<T> loader) {
+        Object v;
+        synchronized (lru) { v = lru.get(key); }
+        if (v != null) {
+            hits.increment();
+            return (T) v;
+        }
+        misses.increment();
+        T loaded = loader.get();
+        if (loaded != null) synchronized (lru) { lru.put(key, loaded); }
+        return loaded;
+    }
+
+    /** History of an asset changed behind the live path: previous keys and ETags become stale. */
+    public void invalidate(long assetId) {
+        epochs.merge(assetId, 1L, Long::sum);
+    }
+
+    /** History of unknown assets changed: every key and ETag becomes stale. */
+    public void invalidateAll() {
+        globalEpoch.incrementAndGet();
+        synchronized (lru) { lru.clear(); }
+    }
+
+    public int size() {
+        synchronized (lru) { return lru.size(); }
+    }
+}
@@ -0,0 +1,37 @@
+package org.caureq.caureqopsboard.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Opaque keyset cursors: base64url of a kind tag and the sort key of the last row returned.
+ * Clients pass them back unchanged (X-Next-Cursor -> cursor=); a malformed cursor or one issued
+ * by another endpoint is rejected with IllegalArgumentException (400).
+ */
+public final class PageCursor {
+    private static final char SEP = '\n';
+
+    private PageCursor() {}
+
+    /** Parts must not contain newlines; null parts are encoded as empty strings. */
+    public static String encode(String kind, String... parts) {
+        var sb = new StringBuilder(kind);
+        for (var p : parts) sb.append(SEP).append(p == null ? "" : p);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** @return the parts after the kind tag (empty strings for encoded nulls) */
+    public static String[] decode(String cursor, String kind, int parts) {
+        String s;
+        try {
+            s = new String(Base64.getUrlDecoder().decode(cursor.trim()), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("invalid cursor");
+        }
+        var all = s.split(String.valueOf(SEP), -1);
+        if (all.length != parts + 1 || !all[0].equals(kind)) throw new IllegalArgumentException("invalid cursor");
+        var out = new String[parts];
+        System.arraycopy(all, 1, out, 0, parts);
+        return out;
+    }
+}
@@ -0,0 +1,290 @@
+package org.caureq.caureqopsboard.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.caureq.caureqopsboard.repo.RecentMetricsRepo;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Newest app.metrics.recent-samples raw samples per asset, in primitive ring buffers
+ * (parallel long/double arrays, no object per sample).
+ *
+ * Responsibilities
+ * - Warm every asset from the DB at startup; load an asset lazily if it is missing.
+ *   A ring is registered before its DB read, so samples committed meanwhile are appended to it
+ *   (and not loaded twice); readers wait until the load is merged.
+ * - Append committed live samples (IngestService); evict an asset when history is written
+ *   behind its newest sample (replay/import) so the next read reloads it.
+ * - Serve latest() and summaries of windows the ring fully covers without a DB round-trip.
+ *
+ * State is per instance: samples ingested by another instance are only seen after a reload.
+ */
+@Slf4j
+@Component
+public class RecentMetricsBuffer {
+    private final RecentMetricsRepo repo;
+    private final int capacity;
+    private final Map<Long, Ring> rings = new ConcurrentHashMap<>();
+    /** True while warm() runs: appends for unknown assets then open a ring that warm() completes. */
+    private volatile boolean warming;
+    private final Object warmLock = new Object();
+    private final Set<Long> evictedWhileWarming = ConcurrentHashMap.newKeySet();
+
+    public RecentMetricsBuffer(RecentMetricsRepo repo, MeterRegistry registry,
+                               @Value("${app.metrics.recent-samples:200}") int capacity) {
+        this.repo = repo;
+        this.capacity = Math.max(10, capacity);
+        Gauge.builder("metrics.recent.assets", rings, Map::size).register(registry);
+    }
+
+    public int capacity() { return capacity; }
+
+    /** Receives points newest first. */
+    @FunctionalInterface
+    public interface PointSink {
+        void accept(long tsMillis, double cpu, double ram, double disk);
+    }
+
+    /** Stats of one metric over a window (percentiles interpolated like percentile_cont). */
+    public record Stat(double avg, double max, double p50, double p95, double p99) {}
+    public record WindowStats(int points, Stat cpu, Stat ram, Stat disk) {}
+
+    /**
+     * Fill rings for every asset in one query. Ingest is already live: rings loaded lazily in the
+     * meantime are kept, and samples appended during the query are merged into the loaded ones.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warm() {
+        warming = true;
+        evictedWhileWarming.clear();
+        boolean ok = false;
+        try {
+            Map<Long, Ring> loaded = new HashMap<>();
+            repo.newestPerAsset(capacity, (id, ts, c, r, d) ->
+                    loaded.computeIfAbsent(id, k -> new Ring(capacity, false)).add(ts, c, r, d));
+            int n = 0;
+            for (var e : loaded.entrySet()) {
+                if (evictedWhileWarming.contains(e.getKey())) continue; // loaded before a late write
+                var prev = rings.putIfAbsent(e.getKey(), e.getValue());
+                if (prev == null) n++;
+                else if (prev.warmPending) prev.merge(e.getValue());
+            }
+            ok = true;
+            log.info("[Metrics] recent sample buffers warmed for {} assets", n);
+        } catch (Exception e) {
+            log.warn("[Metrics] warming recent sample buffers failed (lazy loading instead): {}", e.getMessage());
+        } finally {
+            synchronized (warmLock) { warming = false; }
+            for (var e : rings.entrySet()) {
+                var ring = e.getValue();
+                if (!ring.warmPending) continue;
+                if (ok) {
+                    ring.loaded(); // no rows in the query: the appended samples are the whole history
+                } else {
+                    rings.remove(e.getKey(), ring);
+                    ring.failed();
+                }
+            }
+        }
+    }
+
+    /** Append a committed sample; ignored for assets not loaded yet (the next read loads them). */
+    public void append(long assetId, long tsMillis, double cpu, double ram, double disk) {
+        var ring = rings.get(assetId);
+        if (ring == null && warming) {
+            synchronized (warmLock) {
+                ring = warming ? rings.computeIfAbsent(assetId, k -> Ring.forWarm(capacity)) : rings.get(assetId);
+            }
+        }
+        if (ring != null) ring.add(tsMillis, cpu, ram, disk);
+    }
+
+    public void evict(long assetId) {
+        if (warming) evictedWhileWarming.add(assetId);
+        rings.remove(assetId);
+    }
+
+    /** Up to limit newest points (newest first); limit is capped at the ring capacity. */
+    public void latest(long assetId, int limit, PointSink sink) {
+        ring(assetId).newest(limit, sink);
+    }
+
+    /** Stats for [fromMillis, toMillis], or null when the ring may not hold the whole window. */
+    public WindowStats stats(long assetId, long fromMillis, long toMillis) {
+        return ring(assetId).stats(fromMillis, toMillis);
+    }
+
+    private Ring ring(long assetId) {
+        while (true) {
+            var ring = rings.get(assetId);
+            if (ring == null) {
+                var fresh = new Ring(capacity, true);
+                ring = rings.putIfAbsent(assetId, fresh);
+                if (ring == null) return load(assetId, fresh);
+            }
+            if (ring.awaitLoaded()) return ring; // else its load failed and it was removed: retry
+        }
+    }
+
+    /** Fill a registered ring from the DB; appends that arrived meanwhile are already in it. */
+    private Ring load(long assetId, Ring fresh) {
+        try {
+            repo.newest(assetId, capacity, (id, ts, c, r, d) -> fresh.load(ts, c, r, d));
+        } catch (RuntimeException e) {
+            rings.remove(assetId, fresh);
+            fresh.failed();
+            throw e;
+        }
+        fresh.loaded();
+        return fresh;
+    }
+
+    /** Fixed-size ring ordered by timestamp; slot i (logical, oldest = 0) is at (head - size + i) mod capacity. */
+    static final class Ring {
+        private final long[] ts;
+        private final double[] cpu, ram, disk;
+        private int head, size;
+        /** True once a sample fell off the end (a full ring is treated the same): older data may exist. */
+        private boolean truncated;
+        /** Non-null while the DB load is pending: timestamps appended meanwhile (so they are not loaded twice). */
+        private Set<Long> appendedWhileLoading;
+        private boolean failed;
+        /** Opened by an append during warm(); warm() merges its rows and completes it. */
+        final boolean warmPending;
+
+        Ring(int capacity, boolean loading) {
+            this(capacity, loading, false);
+        }
+
+        private Ring(int capacity, boolean loading, boolean warmPending) {
+            ts = new long[capacity];
+            cpu = new double[capacity];
+            ram = new double[capacity];
+            disk = new double[capacity];
+            if (loading) appendedWhileLoading = new HashSet<>();
+            this.warmPending = warmPending;
+        }
+
+        static Ring forWarm(int capacity) { return new Ring(capacity, true, true); }
+
+        /** A sample from the DB load; skipped when the same sample was appended meanwhile. */
+        synchronized void load(long t, double c, double r, double d) {
+            if (appendedWhileLoading == null || !appendedWhileLoading.contains(t)) insert(t, c, r, d);
+        }
+
+        synchronized void merge(Ring from) {
+            from.newest(from.size, (t, c, r, d) -> load(t, c, r, d));
+        }
+
+        synchronized void loaded() {
+            appendedWhileLoading = null;
+            notifyAll();
+        }
+
+        synchronized void failed() {
+            failed = true;
+            appendedWhileLoading = null;
+            notifyAll();
+        }
+
+        /** Blocks while the DB load is pending. @return false when the load failed */
+        synchronized boolean awaitLoaded() {
+            boolean interrupted = false;
+            while (appendedWhileLoading != null) {
+                try { wait(); } catch (InterruptedException e) { interrupted = true; }
+            }
+            if (interrupted) Thread.currentThread().interrupt();
+            return !failed;
+        }
+
+        private int slot(int i) {
+            int n = ts.length;
+            return ((head - size + i) % n + n) % n;
+        }
+
+        synchronized void add(long t, double c, double r, double d) {
+            if (appendedWhileLoading != null) appendedWhileLoading.add(t);
+            insert(t, c, r, d);
+        }
+
+        private void insert(long t, double c, double r, double d) {
+            int n = ts.length;
+            if (size == 0 || t >= ts[slot(size - 1)]) { // common case: newest sample
+                ts[head] = t; cpu[head] = c; ram[head] = r; disk[head] = d;
+                head = (head + 1) % n;
+                if (size < n) size++; else truncated = true;
+                return;
+            }
+            // out of order (agent clock): insert at its position, dropping the oldest if full
+            int pos = size;
+            while (pos > 0 && ts[slot(pos - 1)] > t) pos--;
+            if (size == n) {
+                if (pos == 0) { truncated = true; return; } // older than everything held
+                for (int i = 0; i < pos - 1; i++) copy(slot(i + 1), slot(i));
+                set(slot(pos - 1), t, c, r, d);
+                truncated = true;
+                return;
+            }
+            for (int i = size; i > pos; i--) copy(slot(i - 1), slot(i));
+            set(slot(pos), t, c, r, d);
+            head = (head + 1) % n;
+            size++;
+        }
+
+        private void copy(int from, int to) {
+            ts[to] = ts[from]; cpu[to] = cpu[from]; ram[to] = ram[from]; disk[to] = disk[from];
+        }
+
+        private void set(int s, long t, double c, double r, double d) {
+            ts[s] = t; cpu[s] = c; ram[s] = r; disk[s] = d;
+        }
+
+        synchronized void newest(int limit, PointSink sink) {
+            int k = Math.min(limit, size);
+            for (int i = size - 1; i >= size - k; i--) {
+                int s = slot(i);
+                sink.accept(ts[s], cpu[s], ram[s], disk[s]);
+            }
+        }
+
+        synchronized WindowStats stats(long from, long to) {
+            if ((truncated || size == ts.length) && (size == 0 || from < ts[slot(0)])) return null;
+            int lo = 0;
+            while (lo < size && ts[slot(lo)] < from) lo++;
+            int hi = size;
+            while (hi > lo && ts[slot(hi - 1)] > to) hi--;
+            int k = hi - lo;
+            if (k == 0) return new WindowStats(0, null, null, null);
+            double[] buf = new double[k];
+            return new WindowStats(k, stat(cpu, lo, k, buf), stat(ram, lo, k, buf), stat(disk, lo, k, buf));
+        }
+
+        private Stat stat(double[] values, int lo, int k, double[] buf) {
+            double sum = 0;
+            for (int i = 0; i < k; i++) {
+                buf[i] = values[slot(lo + i)];
+                sum += buf[i];
+            }
+            Arrays.sort(buf, 0, k);
+            return new Stat(sum / k, buf[k - 1], pct(buf, k, 0.5), pct(buf, k, 0.95), pct(buf, k, 0.99));
+        }
+
+        private static double pct(double[] sorted, int k, double p) {
+            double pos = p * (k - 1);
+            int i = (int) Math.floor(pos);
+            int j = Math.min(i + 1, k - 1);
+            return sorted[i] + (sorted[j] - sorted[i]) * (pos - i);
+        }
+    }
+}
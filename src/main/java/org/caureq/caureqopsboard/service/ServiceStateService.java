@@ -0,0 +1,172 @@
+package org.caureq.caureqopsboard.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.caureq.caureqopsboard.repo.ServiceStateRepo;
+import org.caureq.caureqopsboard.repo.ServiceStateRepo.Change;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Change-only storage of agent service states.
+ *
+ * Responsibilities
+ * - Dictionary-encode service names (service_catalog) and keep the id mapping in memory.
+ * - Keep the current state per asset in memory (loaded from service_state on first use).
+ * - Diff each reported snapshot against it and persist only transitions.
+ *
+ * A null services map means "no information" and changes nothing; a map is the full set
+ * of services the agent reports, so services missing from it are recorded as gone.
+ * If the surrounding transaction rolls back, the touched assets are evicted and reloaded.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ServiceStateService {
+    private final ServiceStateRepo repo;
+
+    private final Map<String, Integer> idsByName = new ConcurrentHashMap<>();
+    private final Map<Integer, String> namesById = new ConcurrentHashMap<>();
+    private volatile boolean catalogLoaded;
+    private final Map<Long, Map<Integer, String>> states = new ConcurrentHashMap<>();
+
+    /**
+     * Record one snapshot per asset (in report order) and write the resulting transitions.
+     * Must run inside the ingest transaction.
+     */
+    public void record(List<Long> assetIds, List<Map<String, String>> snapshots, List<Instant> ts) {
+        List<Change> changes = new ArrayList<>();
+        Set<Long> touched = new HashSet<>();
+        Set<Long> toLoad = new HashSet<>();
+        for (int i = 0; i < assetIds.size(); i++) {
+            if (snapshots.get(i) != null && !states.containsKey(assetIds.get(i))) toLoad.add(assetIds.get(i));
+        }
+        load(toLoad);
+        for (int i = 0; i < assetIds.size(); i++) {
+            var snapshot = snapshots.get(i);
+            if (snapshot == null) continue;
+            long assetId = assetIds.get(i);
+            var next = encode(snapshot);
+            var at = ts.get(i);
+            states.compute(assetId, (id, cur) -> {
+                var current = cur == null ? new HashMap<Integer, String>() : cur;
+                for (var e : next.entrySet()) {
+                    if (!e.getValue().equals(current.get(e.getKey()))) {
+                        changes.add(new Change(assetId, e.getKey(), e.getValue(), at));
+                    }
+                }
+                for (var sid : current.keySet()) {
+                    if (!next.containsKey(sid)) changes.add(new Change(assetId, sid, null, at));
+                }
+                return next;
+            });
+            touched.add(assetId);
+        }
+        if (changes.isEmpty()) return;
+        evictOnRollback(touched);
+        repo.apply(changes);
+        log.debug("recorded {} service transitions for {} assets", changes.size(), touched.size());
+    }
+
+    /** Current service -> state map for an asset (empty when nothing was ever reported). */
+    public Map<String, String> current(long assetId) {
+        if (!states.containsKey(assetId)) load(Set.of(assetId));
+        var cur = states.getOrDefault(assetId, Map.of());
+        Map<String, String> out = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        cur.forEach((sid, state) -> out.put(name(sid), state));
+        return out;
+    }
+
+    /** True once the normalised store holds at least one state for the asset. */
+    public boolean hasStates(long assetId) {
+        if (!states.containsKey(assetId)) load(Set.of(assetId));
+        return !states.getOrDefault(assetId, Map.of()).isEmpty();
+    }
+
+    @Transactional(readOnly = true)
+    public List<ServiceStateRepo.TransitionRow> history(long assetId, Instant from, Instant to, String service, int limit) {
+        return repo.history(assetId, from, to, service, limit);
+    }
+
+    private Map<Integer, String> encode(Map<String, String> snapshot) {
+        Map<Integer, String> out = new HashMap<>(snapshot.size() * 2);
+        snapshot.forEach((name, state) -> {
+            if (name == null || name.isBlank() || state == null) return;
+            out.put(serviceId(name.trim()), state.trim());
+        });
+        return out;
+    }
+
+    private int serviceId(String name) {
+        loadCatalog();
+        var id = idsByName.get(name);
+        if (id != null) return id;
+        synchronized (idsByName) {
+            id = idsByName.get(name);
+            if (id != null) return id;
+            id = repo.ensureService(name);
+            idsByName.put(name, id);
+            namesById.put(id, name);
+            forgetOnRollback(name, id);
+            return id;
+        }
+    }
+
+    private String name(int serviceId) {
+        loadCatalog();
+        var n = namesById.get(serviceId);
+        if (n == null) { // inserted by another instance
+            catalogLoaded = false;
+            loadCatalog();
+            n = namesById.getOrDefault(serviceId, "#" + serviceId);
+        }
+        return n;
+    }
+
+    private void loadCatalog() {
+        if (catalogLoaded) return;
+        synchronized (idsByName) {
+            if (catalogLoaded) return;
+            for (var e : repo.loadCatalog()) {
+                idsByName.put(e.name(), e.id());
+                namesById.put(e.id(), e.name());
+            }
+            catalogLoaded = true;
+        }
+    }
+
+    private void load(Set<Long> assetIds) {
+        if (assetIds.isEmpty()) return;
+        Map<Long, Map<Integer, String>> loaded = new HashMap<>();
+        assetIds.forEach(id -> loaded.put(id, new HashMap<>()));
+        repo.loadStates(assetIds, r -> loaded.get(r.assetId()).put(r.serviceId(), r.state()));
+        loaded.forEach(states::putIfAbsent);
+    }
+
+    private void evictOnRollback(Set<Long> assetIds) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) return;
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) assetIds.forEach(states::remove);
+            }
+        });
+    }
+
+    private void forgetOnRollback(String name, int id) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) return;
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    idsByName.remove(name, id);
+                    namesById.remove(id, name);
+                }
+            }
+        });
+    }
+}
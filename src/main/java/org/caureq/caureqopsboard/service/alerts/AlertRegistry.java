@@ -3,6 +3,7 @@ package org.caureq.caureqopsboard.service.alerts;
 import lombok.Value;
 import org.caureq.caureqopsboard.domain.AlertRecord;
 import org.caureq.caureqopsboard.repo.AlertRepo;
+import org.caureq.caureqopsboard.service.PageCursor;
 import org.springframework.stereotype.Component;
 
 import java.time.Instant;
@@ -57,6 +58,35 @@ public class AlertRegistry {
         return new Alert(r.getId(), r.getHostname(), r.getType(), r.getMessage(), r.getTs(), r.isAcknowledged());
     }
 
+    /** One keyset page; nextCursor is null on the last page. */
+    public record AlertPage(List<Alert> items, String nextCursor) {}
+
+    /**
+     * Keyset pagination on (ts, id), newest first: every page costs the same as the first.
+     * @param cursor nextCursor of the previous page, or null for the first page
+     */
+    public AlertPage scroll(String host, Boolean ack, int limit, String cursor) {
+        int size = Math.max(1, Math.min(limit <= 0 ? 50 : limit, 500));
+        var h = (host == null || host.isBlank()) ? null : host.trim();
+        var p = PageRequest.of(0, size);
+        List<AlertRecord> rows;
+        if (cursor == null || cursor.isBlank()) {
+            rows = repo.scroll(h, ack, p);
+        } else {
+            var c = PageCursor.decode(cursor, "alerts", 2);
+            Instant ts;
+            try { ts = Instant.parse(c[0]); }
+            catch (Exception e) { throw new IllegalArgumentException("invalid cursor"); }
+            rows = repo.scrollAfter(h, ack, ts, c[1], p);
+        }
+        String next = null;
+        if (rows.size() == size) {
+            var last = rows.get(rows.size() - 1);
+            next = PageCursor.encode("alerts", last.getTs().toString(), last.getId());
+        }
+        return new AlertPage(rows.stream().map(this::toDto).toList(), next);
+    }
+
     /** Query with optional filters and pagination (offset/limit). */
     public List<Alert> query(String host, Boolean ack, int limit, int offset) {
         int size = Math.max(1, Math.min(limit <= 0 ? 50 : limit, 500));
@@ -0,0 +1,165 @@
+package org.caureq.caureqopsboard.service.lineproto;
+
+import io.netty.buffer.ByteBuf;
+import org.caureq.caureqopsboard.api.dto.IngestDTO;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Parser for the text ingest line protocol:
+ * <pre>host=web01 ip=10.0.0.5 cpu=12.5 ram=40 disk=71.2 svc.nginx=up svc.cron=down</pre>
+ *
+ * Fields are key=value tokens separated by spaces or tabs, in any order.
+ * Required: host, cpu, ram, disk. Optional: ip, os, agent, seq, ts (epoch seconds or millis), svc.&lt;name&gt;.
+ * Values cannot contain spaces. Keys and numbers are matched directly on the bytes of the
+ * frame; Strings are only created for host/ip/os/agent and service names/states.
+ */
+public final class LineProtocolParser {
+    private static final byte[] HOST = ascii("host");
+    private static final byte[] IP = ascii("ip");
+    private static final byte[] OS = ascii("os");
+    private static final byte[] CPU = ascii("cpu");
+    private static final byte[] RAM = ascii("ram");
+    private static final byte[] DISK = ascii("disk");
+    private static final byte[] AGENT = ascii("agent");
+    private static final byte[] SEQ = ascii("seq");
+    private static final byte[] TS = ascii("ts");
+    private static final byte[] SVC = ascii("svc.");
+    /** Unusable IPv4 placeholder: IngestService keeps the stored IP when it sees it. */
+    private static final String NO_IP = "0.0.0.0";
+
+    private LineProtocolParser() {}
+
+    /** @return the sample, or null when the line is malformed or incomplete (blank lines included) */
+    public static IngestDTO parse(ByteBuf buf, int from, int to) {
+        String host = null, ip = null, os = null, agent = null;
+        double cpu = Double.NaN, ram = Double.NaN, disk = Double.NaN;
+        Long seq = null;
+        Instant ts = null;
+        Map<String, String> services = null;
+
+        int i = from;
+        while (i < to) {
+            while (i < to && isSpace(buf.getByte(i))) i++;
+            if (i >= to) break;
+            int keyStart = i;
+            while (i < to && buf.getByte(i) != '=' && !isSpace(buf.getByte(i))) i++;
+            if (i >= to || buf.getByte(i) != '=') return null; // token without '='
+            int keyEnd = i++;
+            int valStart = i;
+            while (i < to && !isSpace(buf.getByte(i))) i++;
+            int valEnd = i;
+            if (valEnd == valStart) return null;
+
+            int keyLen = keyEnd - keyStart;
+            if (is(buf, keyStart, keyLen, HOST)) host = str(buf, valStart, valEnd);
+            else if (is(buf, keyStart, keyLen, IP)) ip = str(buf, valStart, valEnd);
+            else if (is(buf, keyStart, keyLen, OS)) os = str(buf, valStart, valEnd);
+            else if (is(buf, keyStart, keyLen, CPU)) cpu = decimal(buf, valStart, valEnd);
+            else if (is(buf, keyStart, keyLen, RAM)) ram = decimal(buf, valStart, valEnd);
+            else if (is(buf, keyStart, keyLen, DISK)) disk = decimal(buf, valStart, valEnd);
+            else if (is(buf, keyStart, keyLen, AGENT)) agent = str(buf, valStart, valEnd);
+            else if (is(buf, keyStart, keyLen, SEQ)) {
+                long v = integer(buf, valStart, valEnd);
+                if (v < 0) return null;
+                seq = v;
+            } else if (is(buf, keyStart, keyLen, TS)) {
+                long v = integer(buf, valStart, valEnd);
+                if (v < 0) return null;
+                ts = v >= 100_000_000_000L ? Instant.ofEpochMilli(v) : Instant.ofEpochSecond(v);
+            } else if (keyLen > SVC.length && startsWith(buf, keyStart, SVC)) {
+                if (services == null) services = new HashMap<>();
+                services.put(str(buf, keyStart + SVC.length, keyEnd), str(buf, valStart, valEnd));
+            }
+            // unknown keys are ignored (forward compatibility)
+        }
+        if (host == null || !inRange(cpu) || !inRange(ram) || !inRange(disk)) return null;
+        if (agent != null && agent.length() > 128) return null;
+        if (ip == null || !isIpv4(ip)) ip = NO_IP;
+        return new IngestDTO(host, ip, os, cpu, ram, disk, services, agent, seq, ts);
+    }
+
+    private static boolean isSpace(byte b) { return b == ' ' || b == '\t' || b == '\r'; }
+
+    private static boolean inRange(double v) { return v >= 0.0 && v <= 100.0; } // NaN fails both
+
+    private static boolean is(ByteBuf buf, int start, int len, byte[] key) {
+        return len == key.length && startsWith(buf, start, key);
+    }
+
+    private static boolean startsWith(ByteBuf buf, int start, byte[] prefix) {
+        for (int k = 0; k < prefix.length; k++) {
+            if (buf.getByte(start + k) != prefix[k]) return false;
+        }
+        return true;
+    }
+
+    private static String str(ByteBuf buf, int start, int end) {
+        return buf.toString(start, end - start, StandardCharsets.UTF_8);
+    }
+
+    /** Plain decimal ([-]digits[.digits]); NaN when malformed. */
+    static double decimal(ByteBuf buf, int start, int end) {
+        int i = start;
+        boolean neg = false;
+        if (buf.getByte(i) == '-') { neg = true; i++; }
+        long mant = 0;
+        int scale = 0, digits = 0;
+        boolean dot = false;
+        for (; i < end; i++) {
+            byte b = buf.getByte(i);
+            if (b == '.' && !dot) { dot = true; continue; }
+            if (b < '0' || b > '9') return Double.NaN;
+            if (digits < 17) { // beyond double precision anyway
+                mant = mant * 10 + (b - '0');
+                digits++;
+                if (dot) scale++;
+            } else if (!dot) {
+                return Double.NaN; // absurdly large integer part
+            }
+        }
+        if (digits == 0) return Double.NaN;
+        double v = mant / POW10[scale];
+        return neg ? -v : v;
+    }
+
+    /** Non-negative integer; -1 when malformed. */
+    static long integer(ByteBuf buf, int start, int end) {
+        if (end - start > 18) return -1;
+        long v = 0;
+        for (int i = start; i < end; i++) {
+            byte b = buf.getByte(i);
+            if (b < '0' || b > '9') return -1;
+            v = v * 10 + (b - '0');
+        }
+        return v;
+    }
+
+    private static boolean isIpv4(String s) {
+        int parts = 0, digits = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '.') {
+                if (digits == 0) return false;
+                parts++;
+                digits = 0;
+            } else if (c >= '0' && c <= '9' && digits < 3) {
+                digits++;
+            } else {
+                return false;
+            }
+        }
+        return parts == 3 && digits > 0;
+    }
+
+    private static final double[] POW10 = new double[18];
+    static {
+        POW10[0] = 1;
+        for (int k = 1; k < POW10.length; k++) POW10[k] = POW10[k - 1] * 10;
+    }
+
+    private static byte[] ascii(String s) { return s.getBytes(StandardCharsets.US_ASCII); }
+}
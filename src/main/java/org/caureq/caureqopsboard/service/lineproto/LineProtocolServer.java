@@ -0,0 +1,229 @@
+package org.caureq.caureqopsboard.service.lineproto;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.*;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.DatagramPacket;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioDatagramChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.LineBasedFrameDecoder;
+import lombok.extern.slf4j.Slf4j;
+import org.caureq.caureqopsboard.api.dto.IngestDTO;
+import org.caureq.caureqopsboard.security.IpAllowList;
+import org.caureq.caureqopsboard.service.IngestQueue;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Embedded Netty listener for the text line protocol (see LineProtocolParser), over TCP and UDP.
+ *
+ * Responsibilities
+ * - Frame TCP streams by newline and UDP datagrams by the newlines they contain.
+ * - Parse on the event loop and hand samples to IngestQueue, which batches them into
+ *   IngestService.ingestBatch (same persistence and alerting path as HTTP).
+ * - Reject peers outside app.ingest.line.allow-ips.
+ * - Backpressure: when the queue is full, a TCP connection stops reading and keeps the refused
+ *   sample (and any frame still decoded from the same read) until the queue takes them again;
+ *   UDP samples are dropped (counted in ingest.queue.dropped).
+ *
+ * Disabled unless app.ingest.line.enabled=true. Ports set to 0 disable that transport.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "app.ingest.line.enabled", havingValue = "true")
+public class LineProtocolServer implements SmartLifecycle {
+    private final IngestQueue queue;
+    private final IpAllowList allowList;
+    private final String bind;
+    private final int tcpPort;
+    private final int udpPort;
+    private final int maxLine;
+    private final int threads;
+
+    private final Counter accepted;
+    private final Counter rejected;
+    private final Counter denied;
+
+    private EventLoopGroup boss;
+    private EventLoopGroup workers;
+    private final List<Channel> channels = new ArrayList<>();
+    private volatile boolean running;
+
+    public LineProtocolServer(IngestQueue queue, MeterRegistry registry,
+                              @Value("${app.ingest.line.bind:0.0.0.0}") String bind,
+                              @Value("${app.ingest.line.tcp-port:8094}") int tcpPort,
+                              @Value("${app.ingest.line.udp-port:8094}") int udpPort,
+                              @Value("${app.ingest.line.max-line-bytes:4096}") int maxLine,
+                              @Value("${app.ingest.line.threads:1}") int threads,
+                              @Value("${app.ingest.line.allow-ips:127.0.0.1}") String allowIps) {
+        this.queue = queue;
+        this.bind = bind;
+        this.tcpPort = tcpPort;
+        this.udpPort = udpPort;
+        this.maxLine = Math.max(256, maxLine);
+        this.threads = Math.max(1, threads);
+        this.allowList = IpAllowList.parse(allowIps);
+        this.accepted = Counter.builder("ingest.line.accepted").register(registry);
+        this.rejected = Counter.builder("ingest.line.rejected")
+                .description("Malformed or incomplete lines").register(registry);
+        this.denied = Counter.builder("ingest.line.denied")
+                .description("Connections/datagrams from peers outside the allowlist").register(registry);
+    }
+
+    @Override
+    public void start() {
+        boss = new NioEventLoopGroup(1);
+        workers = new NioEventLoopGroup(threads);
+        try {
+            if (tcpPort > 0) {
+                var b = new ServerBootstrap()
+                        .group(boss, workers)
+                        .channel(NioServerSocketChannel.class)
+                        .childOption(ChannelOption.SO_KEEPALIVE, true)
+                        .childHandler(new ChannelInitializer<SocketChannel>() {
+                            @Override
+                            protected void initChannel(SocketChannel ch) {
+                                if (!allowList.allows(ch.remoteAddress().getAddress().getHostAddress())) {
+                                    denied.increment();
+                                    ch.close();
+                                    return;
+                                }
+                                ch.pipeline()
+                                        .addLast(new LineBasedFrameDecoder(maxLine, true, false))
+                                        .addLast(new TcpLineHandler());
+                            }
+                        });
+                channels.add(b.bind(bind, tcpPort).sync().channel());
+            }
+            if (udpPort > 0) {
+                var b = new Bootstrap()
+                        .group(workers)
+                        .channel(NioDatagramChannel.class)
+                        .option(ChannelOption.SO_RCVBUF, 4 * 1024 * 1024)
+                        .handler(new UdpHandler());
+                channels.add(b.bind(bind, udpPort).sync().channel());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("line protocol listener interrupted while binding", e);
+        }
+        running = true;
+        log.info("[Ingest] line protocol listening on {} tcp={} udp={}", bind, tcpPort, udpPort);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        channels.forEach(ch -> ch.close().syncUninterruptibly());
+        channels.clear();
+        if (boss != null) boss.shutdownGracefully(0, 2, TimeUnit.SECONDS).syncUninterruptibly();
+        if (workers != null) workers.shutdownGracefully(0, 2, TimeUnit.SECONDS).syncUninterruptibly();
+    }
+
+    @Override
+    public boolean isRunning() { return running; }
+
+    /** Start after / stop before IngestQueue so every parsed sample has somewhere to go. */
+    @Override
+    public int getPhase() { return SmartLifecycle.DEFAULT_PHASE - 2048; }
+
+    /** @return the sample, or null for a blank or malformed line (counted as rejected) */
+    private IngestDTO parse(ByteBuf buf, int from, int to) {
+        if (from >= to) return null;
+        IngestDTO d = LineProtocolParser.parse(buf, from, to);
+        if (d == null) rejected.increment();
+        return d;
+    }
+
+    /** @return false when the queue refused the sample */
+    private boolean offer(IngestDTO d) {
+        if (!queue.offer(d)) return false;
+        accepted.increment();
+        return true;
+    }
+
+    /** One per connection; all callbacks run on the channel's event loop. */
+    private final class TcpLineHandler extends SimpleChannelInboundHandler<ByteBuf> {
+        private static final long RETRY_MS = 100;
+        /** Samples refused by the queue, in arrival order; non-empty while reading is paused. */
+        private final ArrayDeque<IngestDTO> pending = new ArrayDeque<>();
+
+        @Override
+        protected void channelRead0(ChannelHandlerContext ctx, ByteBuf line) {
+            var d = parse(line, line.readerIndex(), line.writerIndex());
+            if (d == null) return;
+            if (!pending.isEmpty()) { // paused: frames decoded from the last read still arrive
+                pending.add(d);
+                return;
+            }
+            if (offer(d)) return;
+            // queue full: stop reading, the kernel buffer pushes back on the sender
+            pending.add(d);
+            ctx.channel().config().setAutoRead(false);
+            ctx.executor().schedule(() -> retry(ctx), RETRY_MS, TimeUnit.MILLISECONDS);
+        }
+
+        private void retry(ChannelHandlerContext ctx) {
+            while (!pending.isEmpty() && offer(pending.peek())) pending.poll();
+            if (pending.isEmpty()) ctx.channel().config().setAutoRead(true);
+            else if (ctx.channel().isActive()) ctx.executor().schedule(() -> retry(ctx), RETRY_MS, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+            while (!pending.isEmpty() && offer(pending.peek())) pending.poll();
+            if (!pending.isEmpty()) {
+                log.warn("line protocol connection {} closed with {} samples not queued",
+                        ctx.channel().remoteAddress(), pending.size());
+                pending.clear();
+            }
+            super.channelInactive(ctx);
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            // TooLongFrameException or I/O error: drop the connection, agents reconnect
+            log.debug("line protocol connection {} closed: {}", ctx.channel().remoteAddress(), cause.toString());
+            ctx.close();
+        }
+    }
+
+    private final class UdpHandler extends SimpleChannelInboundHandler<DatagramPacket> {
+        @Override
+        protected void channelRead0(ChannelHandlerContext ctx, DatagramPacket packet) {
+            InetSocketAddress sender = packet.sender();
+            if (!allowList.allows(sender.getAddress().getHostAddress())) {
+                denied.increment();
+                return;
+            }
+            ByteBuf buf = packet.content();
+            int end = buf.writerIndex();
+            int start = buf.readerIndex();
+            for (int i = start; i < end; i++) {
+                if (buf.getByte(i) == '\n') {
+                    offerDatagramLine(buf, start, i);
+                    start = i + 1;
+                }
+            }
+            offerDatagramLine(buf, start, end);
+        }
+
+        private void offerDatagramLine(ByteBuf buf, int from, int to) {
+            var d = parse(buf, from, to);
+            if (d != null) offer(d); // refused datagram samples are counted by the queue
+        }
+    }
+}
@@ -0,0 +1,14 @@
+-- Normalised asset tags (lower-cased, trimmed), kept in sync with the assets.tags CSV by the writers.
+CREATE TABLE IF NOT EXISTS asset_tag (
+    asset_id  BIGINT NOT NULL REFERENCES assets (id) ON DELETE CASCADE,
+    tag       VARCHAR(64) NOT NULL,
+    PRIMARY KEY (asset_id, tag)
+);
+CREATE INDEX IF NOT EXISTS idx_asset_tag_tag ON asset_tag (tag, asset_id);
+
+INSERT INTO asset_tag (asset_id, tag)
+SELECT DISTINCT a.id, lower(trim(t))
+FROM assets a
+CROSS JOIN LATERAL unnest(string_to_array(a.tags, ',')) AS t
+WHERE trim(t) <> ''
+ON CONFLICT DO NOTHING;
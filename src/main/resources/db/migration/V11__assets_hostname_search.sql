@@ -0,0 +1,5 @@
+-- Hostname search: trigram GIN index for substring matches (asset list q=, typeahead),
+-- pattern-ops btree for short prefixes that trigrams cannot serve.
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+CREATE INDEX IF NOT EXISTS idx_assets_hostname_trgm ON assets USING gin (lower(hostname) gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS idx_assets_hostname_prefix ON assets (lower(hostname) text_pattern_ops);
@@ -0,0 +1,5 @@
+-- Asset list: status filters are last_seen ranges.
+-- No indexes on asset_latest_metric cpu/ram/disk: metric sorts run over assets LEFT JOIN
+-- asset_latest_metric ("nulls last"), which cannot use them, and every ingest rewrites those
+-- columns (indexing them would rule out HOT updates).
+CREATE INDEX IF NOT EXISTS idx_assets_last_seen ON assets (last_seen);
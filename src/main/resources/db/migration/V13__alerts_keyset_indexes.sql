@@ -0,0 +1,3 @@
+-- Keyset pagination of alerts on (ts, id), newest first, optionally per host (upper() as in IgnoreCase queries).
+CREATE INDEX IF NOT EXISTS idx_alert_ts_id ON alerts (ts DESC, id DESC);
+CREATE INDEX IF NOT EXISTS idx_alert_host_ts_id ON alerts (upper(hostname), ts DESC, id DESC);
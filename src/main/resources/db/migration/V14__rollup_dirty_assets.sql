@@ -0,0 +1,3 @@
+-- Assets a dirty range was written for (NULL = unknown, every asset of the range).
+-- Days already compacted into metric_chunk are re-aggregated per asset from chunk + raw rows.
+ALTER TABLE metric_rollup_dirty ADD COLUMN IF NOT EXISTS asset_ids BIGINT[];
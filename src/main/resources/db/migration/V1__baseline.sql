@@ -0,0 +1,48 @@
+-- Baseline schema, as previously generated by Hibernate (ddl-auto: update).
+-- Existing databases are baselined at version 1 and skip this script.
+
+CREATE TABLE IF NOT EXISTS assets (
+    id         BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    hostname   VARCHAR(128) NOT NULL UNIQUE,
+    ip         VARCHAR(64),
+    os         VARCHAR(64),
+    owner      VARCHAR(64),
+    tags       VARCHAR(256),
+    node       VARCHAR(64),
+    vmid       INTEGER,
+    last_seen  TIMESTAMP(6) WITH TIME ZONE
+);
+
+CREATE TABLE IF NOT EXISTS metrics (
+    id        BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    asset_id  BIGINT NOT NULL REFERENCES assets (id),
+    cpu       FLOAT(53) NOT NULL,
+    ram       FLOAT(53) NOT NULL,
+    disk      FLOAT(53) NOT NULL,
+    services  TEXT,
+    ts        TIMESTAMP(6) WITH TIME ZONE NOT NULL
+);
+CREATE INDEX IF NOT EXISTS idx_metric_asset_ts ON metrics (asset_id, ts DESC);
+
+CREATE TABLE IF NOT EXISTS alerts (
+    id            VARCHAR(36) PRIMARY KEY,
+    hostname      VARCHAR(128) NOT NULL,
+    type          VARCHAR(64) NOT NULL,
+    message       VARCHAR(512) NOT NULL,
+    ts            TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    acknowledged  BOOLEAN NOT NULL
+);
+CREATE INDEX IF NOT EXISTS idx_alert_ts ON alerts (ts DESC);
+CREATE INDEX IF NOT EXISTS idx_alert_host_ts ON alerts (hostname, ts DESC);
+
+CREATE TABLE IF NOT EXISTS action_log (
+    id       BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    user_ip  VARCHAR(255),
+    actor    VARCHAR(255),
+    action   VARCHAR(255),
+    node     VARCHAR(255),
+    vmid     INTEGER,
+    details  VARCHAR(2000),
+    ts       TIMESTAMP(6) WITH TIME ZONE
+);
+CREATE INDEX IF NOT EXISTS idx_action_ts ON action_log (ts DESC);
@@ -0,0 +1,6 @@
+-- Metric ids come from a pooled sequence (allocationSize = 50) instead of IDENTITY,
+-- so Hibernate can group inserts into JDBC batches.
+CREATE SEQUENCE IF NOT EXISTS metrics_seq START WITH 1 INCREMENT BY 50;
+ALTER TABLE metrics ALTER COLUMN id DROP IDENTITY IF EXISTS;
+-- Skip past existing rows: the next block handed out starts above max(id).
+SELECT setval('metrics_seq', (SELECT COALESCE(MAX(id), 0) FROM metrics) + 50);
@@ -0,0 +1,2 @@
+-- Case-insensitive hostname lookups (ingest cache misses, findByHostnameIgnoreCase).
+CREATE INDEX IF NOT EXISTS idx_assets_hostname_lower ON assets (lower(hostname));
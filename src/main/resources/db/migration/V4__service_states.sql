@@ -0,0 +1,24 @@
+-- Normalised service states: dictionary of service names, current state per asset,
+-- and a transition log that only receives a row when a state changes.
+CREATE TABLE IF NOT EXISTS service_catalog (
+    id    SERIAL PRIMARY KEY,
+    name  VARCHAR(255) NOT NULL UNIQUE
+);
+
+CREATE TABLE IF NOT EXISTS service_state (
+    asset_id    BIGINT NOT NULL REFERENCES assets (id),
+    service_id  INTEGER NOT NULL REFERENCES service_catalog (id),
+    state       VARCHAR(255) NOT NULL,
+    since       TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    PRIMARY KEY (asset_id, service_id)
+);
+
+-- state NULL = service no longer reported by the agent
+CREATE TABLE IF NOT EXISTS service_transition (
+    id          BIGSERIAL PRIMARY KEY,
+    asset_id    BIGINT NOT NULL REFERENCES assets (id),
+    service_id  INTEGER NOT NULL REFERENCES service_catalog (id),
+    state       VARCHAR(255),
+    ts          TIMESTAMP(6) WITH TIME ZONE NOT NULL
+);
+CREATE INDEX IF NOT EXISTS idx_service_transition_asset_ts ON service_transition (asset_id, ts DESC);
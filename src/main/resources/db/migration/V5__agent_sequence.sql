@@ -0,0 +1,7 @@
+-- Per-agent ingest high-water marks (idempotent retries). Written lazily by AgentSequenceTracker.
+CREATE TABLE IF NOT EXISTS agent_sequence (
+    agent_id    VARCHAR(128) PRIMARY KEY,
+    high_seq    BIGINT NOT NULL,
+    seen_mask   BIGINT NOT NULL DEFAULT 0,
+    updated_at  TIMESTAMP(6) WITH TIME ZONE NOT NULL
+);
@@ -0,0 +1,38 @@
+-- metrics becomes a table range-partitioned by ts, one partition per UTC day (metrics_pYYYYMMDD).
+-- Future partitions are created and expired ones dropped by MetricPartitionManager.
+-- The primary key must include the partition key, hence (id, ts); ids still come from metrics_seq.
+ALTER TABLE metrics RENAME TO metrics_legacy;
+DROP INDEX IF EXISTS idx_metric_asset_ts;
+
+CREATE TABLE metrics (
+    id        BIGINT NOT NULL,
+    asset_id  BIGINT NOT NULL REFERENCES assets (id),
+    cpu       FLOAT(53) NOT NULL,
+    ram       FLOAT(53) NOT NULL,
+    disk      FLOAT(53) NOT NULL,
+    services  TEXT,
+    ts        TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    PRIMARY KEY (id, ts)
+) PARTITION BY RANGE (ts);
+CREATE INDEX idx_metric_asset_ts ON metrics (asset_id, ts DESC);
+
+-- Safety net for rows outside every daily partition (very old imports, wild clocks).
+CREATE TABLE metrics_default PARTITION OF metrics DEFAULT;
+
+DO $$
+DECLARE
+    d     date := COALESCE((SELECT min(ts AT TIME ZONE 'UTC')::date FROM metrics_legacy),
+                           (now() AT TIME ZONE 'UTC')::date);
+    last  date := (now() AT TIME ZONE 'UTC')::date + 7;
+BEGIN
+    WHILE d <= last LOOP
+        EXECUTE format(
+            'CREATE TABLE IF NOT EXISTS %I PARTITION OF metrics FOR VALUES FROM (%L) TO (%L)',
+            'metrics_p' || to_char(d, 'YYYYMMDD'), d::text || ' 00:00:00+00', (d + 1)::text || ' 00:00:00+00');
+        d := d + 1;
+    END LOOP;
+END $$;
+
+INSERT INTO metrics (id, asset_id, cpu, ram, disk, services, ts)
+SELECT id, asset_id, cpu, ram, disk, services, ts FROM metrics_legacy;
+DROP TABLE metrics_legacy;
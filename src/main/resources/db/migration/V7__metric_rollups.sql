@@ -0,0 +1,29 @@
+-- Pre-aggregated metrics at 1 minute, 15 minutes and 1 hour, maintained by MetricRollupEngine.
+-- Each row keeps count, sum, min and max so coarser levels can be derived exactly from finer ones.
+CREATE TABLE IF NOT EXISTS metrics_1m (
+    asset_id  BIGINT NOT NULL REFERENCES assets (id),
+    bucket    TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    n         INTEGER NOT NULL,
+    cpu_sum   FLOAT(53) NOT NULL, cpu_min FLOAT(53) NOT NULL, cpu_max FLOAT(53) NOT NULL,
+    ram_sum   FLOAT(53) NOT NULL, ram_min FLOAT(53) NOT NULL, ram_max FLOAT(53) NOT NULL,
+    disk_sum  FLOAT(53) NOT NULL, disk_min FLOAT(53) NOT NULL, disk_max FLOAT(53) NOT NULL,
+    PRIMARY KEY (asset_id, bucket)
+);
+CREATE TABLE IF NOT EXISTS metrics_15m (LIKE metrics_1m INCLUDING ALL);
+ALTER TABLE metrics_15m ADD FOREIGN KEY (asset_id) REFERENCES assets (id);
+CREATE TABLE IF NOT EXISTS metrics_1h (LIKE metrics_1m INCLUDING ALL);
+ALTER TABLE metrics_1h ADD FOREIGN KEY (asset_id) REFERENCES assets (id);
+
+-- Time-only scans of recent raw data (rollup refresh) without a full B-tree on ts.
+CREATE INDEX IF NOT EXISTS idx_metric_ts_brin ON metrics USING brin (ts);
+
+-- Raw ranges written out of order (replay, import) that must be re-aggregated.
+CREATE TABLE IF NOT EXISTS metric_rollup_dirty (
+    id       BIGSERIAL PRIMARY KEY,
+    from_ts  TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    to_ts    TIMESTAMP(6) WITH TIME ZONE NOT NULL
+);
+
+-- Backfill: aggregate whatever raw data already exists on the first engine run.
+INSERT INTO metric_rollup_dirty (from_ts, to_ts)
+SELECT min(ts), max(ts) FROM metrics HAVING count(*) > 0;
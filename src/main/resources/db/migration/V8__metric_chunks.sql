@@ -0,0 +1,13 @@
+-- Cold raw history: one Gorilla-compressed chunk per asset and UTC day (see GorillaCodec).
+-- MetricCompactor moves whole days here from metrics once they are older than app.metrics.compact-after-days.
+CREATE TABLE IF NOT EXISTS metric_chunk (
+    asset_id  BIGINT NOT NULL REFERENCES assets (id),
+    day       DATE NOT NULL,
+    start_ts  TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    end_ts    TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    n         INTEGER NOT NULL,
+    data      BYTEA NOT NULL,
+    PRIMARY KEY (asset_id, day)
+);
+-- data is already compressed: skip pglz compression when TOASTed
+ALTER TABLE metric_chunk ALTER COLUMN data SET STORAGE EXTERNAL;
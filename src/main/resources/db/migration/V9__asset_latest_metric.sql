@@ -0,0 +1,14 @@
+-- Newest sample per asset, upserted by every ingest path so the asset list never scans history.
+CREATE TABLE IF NOT EXISTS asset_latest_metric (
+    asset_id  BIGINT PRIMARY KEY REFERENCES assets (id) ON DELETE CASCADE,
+    ts        TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    cpu       DOUBLE PRECISION NOT NULL,
+    ram       DOUBLE PRECISION NOT NULL,
+    disk      DOUBLE PRECISION NOT NULL
+);
+
+INSERT INTO asset_latest_metric (asset_id, ts, cpu, ram, disk)
+SELECT DISTINCT ON (asset_id) asset_id, ts, cpu, ram, disk
+FROM metrics
+ORDER BY asset_id, ts DESC
+ON CONFLICT (asset_id) DO NOTHING;
@@ -0,0 +1,118 @@
+package org.caureq.caureqopsboard.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class GorillaCodecTest {
+
+    private static final long T0 = 1_700_000_000_000L;
+
+    private static MetricSeries roundTrip(MetricSeries in) {
+        var out = new MetricSeries(in.size);
+        out.decodeFrom(in.encode(), in.size);
+        return out;
+    }
+
+    private static void assertSameBits(MetricSeries a, MetricSeries b) {
+        assertThat(b.size).isEqualTo(a.size);
+        for (int i = 0; i < a.size; i++) {
+            assertThat(b.ts[i]).as("ts[%d]", i).isEqualTo(a.ts[i]);
+            assertThat(Double.doubleToRawLongBits(b.cpu[i])).as("cpu[%d]", i)
+                    .isEqualTo(Double.doubleToRawLongBits(a.cpu[i]));
+            assertThat(Double.doubleToRawLongBits(b.ram[i])).as("ram[%d]", i)
+                    .isEqualTo(Double.doubleToRawLongBits(a.ram[i]));
+            assertThat(Double.doubleToRawLongBits(b.disk[i])).as("disk[%d]", i)
+                    .isEqualTo(Double.doubleToRawLongBits(a.disk[i]));
+        }
+    }
+
+    @Test
+    void emptyAndSingleSample() {
+        assertThat(roundTrip(new MetricSeries(0)).size).isZero();
+
+        var one = new MetricSeries(1);
+        one.add(T0, 12.5, 40.0, 70.25);
+        assertSameBits(one, roundTrip(one));
+    }
+
+    @Test
+    void regularSeriesWithJitterAndEqualValues() {
+        var s = new MetricSeries(1000);
+        for (int i = 0; i < 1000; i++) {
+            long jitter = (i * 37L) % 250 - 125;
+            s.add(T0 + i * 10_000L + jitter, 50.0, 33.3, i * 0.01);
+        }
+        assertSameBits(s, roundTrip(s));
+    }
+
+    @Test
+    void nanAndSpecialValuesKeepTheirBits() {
+        var s = new MetricSeries(8);
+        double otherNaN = Double.longBitsToDouble(0x7ff8_0000_0000_0001L);
+        s.add(T0, Double.NaN, 0.0, Double.POSITIVE_INFINITY);
+        s.add(T0 + 1000, Double.NaN, -0.0, Double.NEGATIVE_INFINITY);
+        s.add(T0 + 2000, otherNaN, Double.MIN_VALUE, Double.MAX_VALUE);
+        s.add(T0 + 3000, 1.0, Double.NaN, Double.NaN);
+        s.add(T0 + 4000, 1.0, Double.NaN, 0.0);
+        assertSameBits(s, roundTrip(s));
+    }
+
+    @Test
+    void xorWithAllSixtyFourBitsSignificant() {
+        var s = new MetricSeries(6);
+        // 0x8000...0001 ^ 0x0000...0000 and similar: lz = tz = 0, sig = 64
+        s.add(T0, 0.0, Double.longBitsToDouble(0x0000_0000_0000_0000L), 1.0);
+        s.add(T0 + 1000, -Double.MIN_VALUE, Double.longBitsToDouble(0x8000_0000_0000_0001L), -1.0);
+        s.add(T0 + 2000, 0.0, Double.longBitsToDouble(0x0000_0000_0000_0000L), 1.0);
+        s.add(T0 + 3000, Double.longBitsToDouble(0x8000_0000_0000_0001L), Double.MIN_VALUE, 3.0);
+        // narrower xor that fits the previous window
+        s.add(T0 + 4000, Double.longBitsToDouble(0x8000_0000_0000_0003L), Double.MIN_VALUE * 3, 3.5);
+        assertSameBits(s, roundTrip(s));
+    }
+
+    @Test
+    void largeAndNegativeDeltaOfDeltas() {
+        var s = new MetricSeries(8);
+        long t = T0;
+        for (long step : new long[] {1, 10_000, 10, Duration.ofHours(20).toMillis(), 1, 70_000, 3, 40_000}) {
+            t += step;
+            s.add(t, step % 100, 1, 2);
+        }
+        assertSameBits(s, roundTrip(s));
+    }
+
+    @Test
+    void rejectsDeltaOfDeltaBeyondThirtySixBits() {
+        long[] ts = {0, 1L << 36};
+        double[] v = {0, 0};
+        assertThatThrownBy(() -> GorillaCodec.encode(ts, v, v, v, 2))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void lateReplayRowsMergeIntoDecodedChunk() {
+        var chunk = new MetricSeries(100);
+        for (int i = 0; i < 100; i++) chunk.add(T0 + i * 60_000L, i, 2 * i, 3 * i);
+        byte[] data = chunk.encode();
+
+        var merged = new MetricSeries(128);
+        merged.decodeFrom(data, chunk.size);
+        merged.add(T0 + 30_500, 99, 99, 99);      // between two samples
+        merged.add(T0 - 60_000, -1, -1, -1);      // before the first one
+        merged.add(T0 + 5 * 60_000L, 7, 7, 7);    // same instant as a stored sample: replay wins
+        merged.sortDedup();
+
+        assertThat(merged.size).isEqualTo(102);
+        for (int i = 1; i < merged.size; i++) assertThat(merged.ts[i]).isGreaterThan(merged.ts[i - 1]);
+        assertThat(merged.ts[0]).isEqualTo(T0 - 60_000);
+        assertThat(merged.ts[2]).isEqualTo(T0 + 30_500);
+        assertThat(merged.ts[7]).isEqualTo(T0 + 5 * 60_000L);
+        assertThat(merged.cpu[7]).isEqualTo(7);
+
+        assertSameBits(merged, roundTrip(merged));
+    }
+}
@@ -0,0 +1,98 @@
+package org.caureq.caureqopsboard.service;
+
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import jakarta.persistence.EntityManager;
+import jakarta.validation.Validation;
+import org.caureq.caureqopsboard.repo.AssetLatestMetricRepo;
+import org.caureq.caureqopsboard.repo.AssetRepo;
+import org.caureq.caureqopsboard.repo.MetricChunkRepo;
+import org.caureq.caureqopsboard.repo.MetricCopyWriter;
+import org.caureq.caureqopsboard.repo.MetricReplayRepo;
+import org.caureq.caureqopsboard.repo.MetricRepo;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.EnableTransactionManagement;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/** Streamed bodies that turn malformed after some chunks were flushed must not commit those chunks. */
+class IngestStreamRollbackTest {
+
+    private static final String SAMPLE = """
+            {"hostname":"web01","ip":"10.0.0.5","os":"Debian","cpu":1,"ram":2,"disk":3}""";
+
+    @Configuration
+    @EnableTransactionManagement
+    static class TxConfig {}
+
+    private final PlatformTransactionManager txManager = mock(PlatformTransactionManager.class);
+    private final IngestService target = spy(new IngestService(
+            mock(AssetRepo.class), mock(MetricRepo.class), mock(MetricCopyWriter.class),
+            mock(AssetTouchCoalescer.class), mock(AssetIdCache.class), mock(AlertService.class),
+            mock(ServiceStateService.class), mock(AgentSequenceTracker.class), mock(MetricRollupEngine.class),
+            mock(RecentMetricsBuffer.class), mock(MetricWindowCache.class), mock(AssetLatestMetricRepo.class),
+            mock(MetricReplayRepo.class), mock(MetricChunkRepo.class), mock(MetricCompactor.class),
+            mock(FleetSnapshot.class),
+            new IngestStreamParser(JsonMapper.builder().findAndAddModules().build(),
+                    Validation.buildDefaultValidatorFactory().getValidator()),
+            mock(EntityManager.class)));
+
+    private ApplicationContextRunner runner() {
+        when(txManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        return new ApplicationContextRunner()
+                .withUserConfiguration(TxConfig.class)
+                .withPropertyValues("app.ingest.stream-chunk=1") // every sample is its own flushed chunk
+                .withBean(PlatformTransactionManager.class, () -> txManager)
+                .withBean(IngestService.class, () -> target);
+    }
+
+    /** Two complete samples, then the body breaks off inside the third. */
+    private static ByteArrayInputStream truncatedBody() {
+        return truncatedBody(SAMPLE);
+    }
+
+    private static ByteArrayInputStream truncatedBody(String sample) {
+        var json = "[" + sample + "," + sample + ",{\"hostname\":\"web0";
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void ingestStreamRollsBackFlushedChunksOnMalformedBody() {
+        doReturn(1).when(target).ingestBatch(anyList());
+        runner().run(ctx -> {
+            var service = ctx.getBean(IngestService.class);
+            assertThatThrownBy(() -> service.ingestStream(truncatedBody(), 100)).isInstanceOf(IOException.class);
+            verify(target, atLeastOnce()).ingestBatch(anyList());
+            verify(txManager).rollback(any());
+            verify(txManager, never()).commit(any());
+        });
+    }
+
+    @Test
+    void replayStreamRollsBackOnMalformedBody() {
+        // outside the replay window: counted as rejected without touching the writers
+        var stale = SAMPLE.replace("}", ",\"ts\":\"2000-01-01T00:00:00Z\"}");
+        runner().run(ctx -> {
+            var service = ctx.getBean(IngestService.class);
+            assertThatThrownBy(() -> service.replayStream(truncatedBody(stale), 100)).isInstanceOf(IOException.class);
+            verify(txManager).rollback(any());
+            verify(txManager, never()).commit(any());
+        });
+    }
+}
@@ -0,0 +1,70 @@
+package org.caureq.caureqopsboard.service;
+
+import org.caureq.caureqopsboard.api.dto.MetricPointDTO;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LttbTest {
+    private static final Instant T0 = Instant.parse("2024-01-01T00:00:00Z");
+
+    private static MetricPointDTO pt(int sec, double cpu, double ram, double disk) {
+        return new MetricPointDTO(T0.plusSeconds(sec).atOffset(ZoneOffset.UTC), cpu, ram, disk);
+    }
+
+    private static List<MetricPointDTO> flat(int n) {
+        List<MetricPointDTO> pts = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) pts.add(pt(i * 30, 10, 20, 30));
+        return pts;
+    }
+
+    @Test
+    void returnsInputWhenAlreadySmallEnough() {
+        var pts = flat(10);
+        assertThat(Lttb.downsample(pts, 10)).isSameAs(pts);
+        assertThat(Lttb.downsample(pts, 50)).isSameAs(pts);
+        assertThat(Lttb.downsample(pts, 2)).isSameAs(pts);
+    }
+
+    @Test
+    void keepsFirstAndLastAndHitsThreshold() {
+        var pts = flat(1000);
+        var out = Lttb.downsample(pts, 100);
+        assertThat(out).hasSize(100);
+        assertThat(out.get(0)).isEqualTo(pts.get(0));
+        assertThat(out.get(99)).isEqualTo(pts.get(999));
+    }
+
+    @Test
+    void outputStaysInTimeOrder() {
+        List<MetricPointDTO> pts = new ArrayList<>();
+        for (int i = 0; i < 500; i++) pts.add(pt(i * 30, 50 + 40 * Math.sin(i / 7.0), 20, 30));
+        var out = Lttb.downsample(pts, 37);
+        for (int i = 1; i < out.size(); i++) {
+            assertThat(out.get(i).ts()).isAfter(out.get(i - 1).ts());
+        }
+    }
+
+    @Test
+    void keepsASpikeInAnySeries() {
+        var pts = flat(1000);
+        pts.set(421, pt(421 * 30, 10, 20, 99));  // disk spike
+        pts.set(777, pt(777 * 30, 95, 20, 30));  // cpu spike
+        var out = Lttb.downsample(pts, 20);
+        assertThat(out).contains(pts.get(421), pts.get(777));
+    }
+
+    @Test
+    void honoursIrregularSpacing() {
+        List<MetricPointDTO> pts = new ArrayList<>();
+        for (int i = 0; i < 300; i++) pts.add(pt(i < 150 ? i : 10_000 + i * 60, 10, 20, 30));
+        pts.set(200, pt(10_000 + 200 * 60, 80, 20, 30));
+        var out = Lttb.downsample(pts, 10);
+        assertThat(out).hasSize(10).contains(pts.get(200));
+    }
+}
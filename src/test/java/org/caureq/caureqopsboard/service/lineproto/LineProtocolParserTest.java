@@ -0,0 +1,126 @@
+package org.caureq.caureqopsboard.service.lineproto;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.caureq.caureqopsboard.api.dto.IngestDTO;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LineProtocolParserTest {
+
+    private static IngestDTO parse(String line) {
+        ByteBuf buf = Unpooled.copiedBuffer(line, StandardCharsets.UTF_8);
+        return LineProtocolParser.parse(buf, buf.readerIndex(), buf.writerIndex());
+    }
+
+    @Test
+    void parsesAllFields() {
+        var d = parse("host=web01 ip=10.0.0.5 os=Debian cpu=12.5 ram=40 disk=71.25 agent=a1 seq=42 ts=1700000000 svc.nginx=up svc.cron=down");
+        assertThat(d).isNotNull();
+        assertThat(d.hostname()).isEqualTo("web01");
+        assertThat(d.ip()).isEqualTo("10.0.0.5");
+        assertThat(d.os()).isEqualTo("Debian");
+        assertThat(d.cpu()).isEqualTo(12.5);
+        assertThat(d.ram()).isEqualTo(40.0);
+        assertThat(d.disk()).isEqualTo(71.25);
+        assertThat(d.agentId()).isEqualTo("a1");
+        assertThat(d.seq()).isEqualTo(42L);
+        assertThat(d.ts()).isEqualTo(Instant.ofEpochSecond(1_700_000_000L));
+        assertThat(d.services()).isEqualTo(Map.of("nginx", "up", "cron", "down"));
+    }
+
+    @Test
+    void fieldOrderAndSeparatorsDoNotMatter() {
+        var d = parse("\tdisk=3 cpu=1.0\t\tram=2   host=db01\r");
+        assertThat(d).isNotNull();
+        assertThat(d.hostname()).isEqualTo("db01");
+        assertThat(d.cpu()).isEqualTo(1.0);
+        assertThat(d.ram()).isEqualTo(2.0);
+        assertThat(d.disk()).isEqualTo(3.0);
+        assertThat(d.services()).isNull();
+        assertThat(d.ts()).isNull();
+    }
+
+    @Test
+    void tsInMillisIsRecognised() {
+        var d = parse("host=h cpu=1 ram=1 disk=1 ts=1700000000123");
+        assertThat(d.ts()).isEqualTo(Instant.ofEpochMilli(1_700_000_000_123L));
+    }
+
+    @Test
+    void missingOrInvalidIpBecomesPlaceholder() {
+        assertThat(parse("host=h cpu=1 ram=1 disk=1").ip()).isEqualTo("0.0.0.0");
+        assertThat(parse("host=h ip=10.0.0 cpu=1 ram=1 disk=1").ip()).isEqualTo("0.0.0.0");
+        assertThat(parse("host=h ip=1.2.3.4567 cpu=1 ram=1 disk=1").ip()).isEqualTo("0.0.0.0");
+    }
+
+    @Test
+    void unknownKeysAreIgnored() {
+        assertThat(parse("host=h cpu=1 ram=1 disk=1 future=x")).isNotNull();
+    }
+
+    @Test
+    void rejectsIncompleteOrMalformedLines() {
+        assertThat(parse("")).isNull();
+        assertThat(parse("   ")).isNull();
+        assertThat(parse("cpu=1 ram=1 disk=1")).isNull();              // no host
+        assertThat(parse("host=h ram=1 disk=1")).isNull();             // no cpu
+        assertThat(parse("host=h cpu=1 ram=1 disk=1 bare")).isNull();  // token without '='
+        assertThat(parse("host=h cpu= ram=1 disk=1")).isNull();        // empty value
+        assertThat(parse("host=h cpu=1x ram=1 disk=1")).isNull();      // not a number
+        assertThat(parse("host=h cpu=. ram=1 disk=1")).isNull();
+        assertThat(parse("host=h cpu=1 ram=1 disk=1 seq=-1")).isNull();
+        assertThat(parse("host=h cpu=1 ram=1 disk=1 ts=abc")).isNull();
+        assertThat(parse("host=h cpu=1 ram=1 disk=1 agent=" + "a".repeat(129))).isNull();
+    }
+
+    @Test
+    void rejectsPercentagesOutOfRange() {
+        assertThat(parse("host=h cpu=100.5 ram=1 disk=1")).isNull();
+        assertThat(parse("host=h cpu=-1 ram=1 disk=1")).isNull();
+        assertThat(parse("host=h cpu=100 ram=0 disk=0")).isNotNull();
+    }
+
+    @Test
+    void parsesOnlyTheGivenRange() {
+        var line = "host=h cpu=5 ram=6 disk=7";
+        ByteBuf buf = Unpooled.copiedBuffer("garbage\n" + line + "\nmore", StandardCharsets.UTF_8);
+        var d = LineProtocolParser.parse(buf, 8, 8 + line.length());
+        assertThat(d).isNotNull();
+        assertThat(d.hostname()).isEqualTo("h");
+        assertThat(d.disk()).isEqualTo(7.0);
+    }
+
+    @Test
+    void decimalHandlesSignsAndFractions() {
+        assertThat(decimal("0.125")).isEqualTo(0.125);
+        assertThat(decimal("-2.5")).isEqualTo(-2.5);
+        assertThat(decimal("42")).isEqualTo(42.0);
+        assertThat(decimal("1.2.3")).isNaN();
+        assertThat(decimal("-")).isNaN();
+        assertThat(decimal("123456789012345678901")).isNaN();
+    }
+
+    @Test
+    void integerRejectsSignsAndOverlongValues() {
+        assertThat(integer("0")).isZero();
+        assertThat(integer("123")).isEqualTo(123);
+        assertThat(integer("+1")).isEqualTo(-1);
+        assertThat(integer("1234567890123456789")).isEqualTo(-1);
+    }
+
+    private static double decimal(String s) {
+        ByteBuf buf = Unpooled.copiedBuffer(s, StandardCharsets.US_ASCII);
+        return LineProtocolParser.decimal(buf, 0, buf.writerIndex());
+    }
+
+    private static long integer(String s) {
+        ByteBuf buf = Unpooled.copiedBuffer(s, StandardCharsets.US_ASCII);
+        return LineProtocolParser.integer(buf, 0, buf.writerIndex());
+    }
+}
@@ -0,0 +1,83 @@
+package org.caureq.caureqopsboard.service.lineproto;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.caureq.caureqopsboard.api.dto.IngestDTO;
+import org.caureq.caureqopsboard.service.IngestQueue;
+import org.caureq.caureqopsboard.service.IngestService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+/** Line protocol enabled with app.ingest.async left at its default: samples must still be written. */
+class LineProtocolWiringTest {
+
+    private final IngestService ingestService = mock(IngestService.class);
+    /** Hostnames handed to ingestBatch (the queue reuses and clears its batch list afterwards). */
+    private final BlockingQueue<String> written = new LinkedBlockingQueue<>();
+
+    @BeforeEach
+    void captureWrites() {
+        doAnswer(inv -> {
+            List<IngestDTO> batch = inv.getArgument(0);
+            batch.forEach(d -> written.add(d.hostname()));
+            return batch.size();
+        }).when(ingestService).ingestBatch(anyList());
+    }
+
+    private ApplicationContextRunner runner() {
+        return new ApplicationContextRunner()
+                .withBean(IngestService.class, () -> ingestService)
+                .withBean(MeterRegistry.class, SimpleMeterRegistry::new)
+                .withBean(IngestQueue.class)
+                .withBean(LineProtocolServer.class);
+    }
+
+    @Test
+    void lineProtocolWithoutAsyncStartsTheQueueWriters() throws Exception {
+        int port;
+        try (var probe = new DatagramSocket(0, InetAddress.getLoopbackAddress())) { port = probe.getLocalPort(); }
+        runner().withPropertyValues(
+                        "app.ingest.line.enabled=true",
+                        "app.ingest.line.bind=127.0.0.1",
+                        "app.ingest.line.tcp-port=0",
+                        "app.ingest.line.udp-port=" + port)
+                .run(ctx -> {
+                    assertThat(ctx).hasNotFailed();
+                    assertThat(ctx.getBean(IngestQueue.class).isRunning()).isTrue();
+
+                    var line = "host=web01 ip=10.0.0.5 cpu=1 ram=2 disk=3\n".getBytes(StandardCharsets.UTF_8);
+                    try (var s = new DatagramSocket()) {
+                        s.send(new DatagramPacket(line, line.length, InetAddress.getLoopbackAddress(), port));
+                    }
+                    assertThat(written.poll(5, TimeUnit.SECONDS)).isEqualTo("web01");
+                });
+    }
+
+    @Test
+    void queueStaysIdleWhenNeitherAsyncNorLineProtocolIsEnabled() {
+        new ApplicationContextRunner()
+                .withBean(IngestService.class, () -> ingestService)
+                .withBean(MeterRegistry.class, SimpleMeterRegistry::new)
+                .withBean(IngestQueue.class)
+                .run(ctx -> {
+                    var queue = ctx.getBean(IngestQueue.class);
+                    assertThat(queue.isRunning()).isFalse();
+                    assertThat(queue.offer(null)).isFalse();
+                });
+    }
+}